@@ -5,6 +5,7 @@ import java.util.*;
 import java.awt.Dimension;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
 
 /**
  * Canvas is a class to allow for simple graphical drawing on a canvas.
@@ -45,6 +46,17 @@ public class Canvas
         return canvas;
     }
 
+    /**
+     * Replaces the canvas with one that has no window and only draws into an image,
+     * so that what the game draws can be checked on a machine with no screen.
+     * @return The new canvas, returned by getCanvas from now on.
+     */
+    static Canvas useOffscreenCanvas()
+    {
+        canvas = new Canvas(size+2, size+2, Color.white);
+        return canvas;
+    }
+
     public static int getSize()
     {
         return size; 
@@ -57,6 +69,8 @@ public class Canvas
     private Graphics2D graphics;
     private Color backgroundColor;
     private Image canvasImage;
+    private Image backgroundImage; // drawn under all the shapes, null for a plain background
+    private Image overlayImage; // drawn over the background and all the shapes, null for none
     private List<Object> objects;
     private HashMap<Object, ShapeDescription> shapes;
     private Key lastKey = Key.NONE;
@@ -83,6 +97,21 @@ public class Canvas
         shapes = new HashMap<Object, ShapeDescription>();
     }
 
+    /**
+     * Create a Canvas with no window, drawing into an image only (see useOffscreenCanvas).
+     * @param width    the width of the image
+     * @param height   the height of the image
+     * @param bgColor  the background color of the canvas
+     */
+    private Canvas(int width, int height, Color bgColor)
+    {
+        canvasImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        graphics = (Graphics2D)canvasImage.getGraphics();
+        backgroundColor = bgColor;
+        objects = new ArrayList<Object>();
+        shapes = new HashMap<Object, ShapeDescription>();
+    }
+
     /**
      * Set the canvas visibility and brings canvas to the front of screen
      * when made visible. This method can also be used to bring an already
@@ -123,7 +152,8 @@ public class Canvas
                 graphics.drawString("Control Player 2 (Green) with W,A,S,D", size.width/2-280, 500);
             }
         }
-        frame.setVisible(visible);
+        if (frame != null)
+            frame.setVisible(visible);
     }
 
     /**
@@ -142,6 +172,38 @@ public class Canvas
         shapes.put(referenceObject, new ShapeDescription(shape, color));
     }
 
+    /**
+     * Removes all shapes and the background image, ready for a new game.
+     */
+    public void clear()
+    {
+        objects.clear();
+        shapes.clear();
+        backgroundImage = null;
+        overlayImage = null;
+    }
+
+    /**
+     * Set an image drawn under all the shapes, such as a maze rasterized ahead of time.
+     * @param  image  the background image, or null for a plain background
+     */
+    public void setBackgroundImage(Image image)
+    {
+        backgroundImage = image;
+    }
+
+    /**
+     * Set a transparent image drawn over the background and all the shapes,
+     * such as the trail of the solver, so that many marks cost a single image to draw.
+     * It is drawn last, or the white squares left in every room a player or an evil circle
+     * has been in would hide it.
+     * @param  image  the overlay image, or null for none
+     */
+    public void setOverlayImage(Image image)
+    {
+        overlayImage = image;
+    }
+
     /**
      * Erase a given shape's from the screen.
      * @param  referenceObject  the shape object to be erased 
@@ -216,10 +278,15 @@ public class Canvas
     private void redraw()
     {
         erase();
+        if (backgroundImage != null)
+            graphics.drawImage(backgroundImage, 0, 0, null);
         for (Object o : objects) {
             shapes.get(o).draw(graphics);
         }
-        canvasPane.repaint();
+        if (overlayImage != null)
+            graphics.drawImage(overlayImage, 0, 0, null);
+        if (canvasPane != null)
+            canvasPane.repaint();
     }
 
     /**
@@ -229,11 +296,18 @@ public class Canvas
     {
         Color original = graphics.getColor();
         graphics.setColor(backgroundColor);
-        Dimension size = canvasPane.getSize();
-        graphics.fill(new Rectangle(0, 0, size.width, size.height));
+        graphics.fill(new Rectangle(0, 0, canvasImage.getWidth(null), canvasImage.getHeight(null)));
         graphics.setColor(original);
     }
 
+    /**
+     * @return The image everything is drawn into, as shown on the screen after the last refresh.
+     */
+    Image getImage()
+    {
+        return canvasImage;
+    }
+
     /**
      * @return Key Last key pressed.
      */
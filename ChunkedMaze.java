@@ -0,0 +1,359 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.SplittableRandom;
+
+/**
+ * An endless maze, for a game mode where the maze goes on in every direction.
+ * The world is split into square chunks of rooms, each one a perfect maze generated
+ * the first time one of its rooms is asked for with getRoom. Every chunk is generated
+ * from its own seed, mixed from the world seed and the chunk coordinates, and every border
+ * between two chunks has one opening whose position is mixed the same way, so both chunks
+ * agree on it and all the chunks join into one connected maze.
+ *
+ * Only a bounded number of chunks is kept in memory, so memory stays flat however far the players
+ * travel. Every chunk keeps what is in its rooms (players, evil circles, power-ups) in an OccupancyIndex
+ * of its own, and a chunk with something in its rooms is never dropped. When there are too many chunks,
+ * the one dropped is the furthest from all the chunks with something in their rooms, or the least
+ * recently used one if several are as far. A chunk that was dropped is generated again, identically,
+ * when it is visited again, and the walls opened in it with Room.setExits, which are also kept apart
+ * in an overlay of one byte per room of every changed chunk, are opened again.
+ *
+ * Rooms have world coordinates (row, col), which can be any int, including negative ones.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class ChunkedMaze extends Maze
+{
+    private long worldSeed; // the seed all the chunks are generated from
+    private int chunkSize; // number of rooms in each row & col of a chunk
+    private MazeGenerator generator; // algorithm used to carve each chunk
+    private int maxChunks; // number of chunks kept in memory, unless more have something in their rooms
+    private LinkedHashMap<Long, Chunk> chunks; // the chunks in memory, least recently used first
+    private HashMap<Long, byte[]> opened; // exits opened through the rooms of every changed chunk, room by room
+    private long lastKey; // the chunk used last, looked up without going through the cache
+    private Chunk lastChunk;
+    private long generated; // number of chunks generated so far, including regenerated ones
+
+    /**
+     * Constructor for objects of class ChunkedMaze, carving the chunks depth-first.
+     * @param worldSeed The seed of the whole maze.
+     * @param chunkSize The number of rooms in each row & col of a chunk.
+     * @param maxChunks The number of chunks kept in memory.
+     */
+    public ChunkedMaze(long worldSeed, int chunkSize, int maxChunks)
+    {
+        this(worldSeed, chunkSize, maxChunks, new DepthFirstMazeGenerator());
+    }
+
+    /**
+     * Constructor for objects of class ChunkedMaze.
+     * @param worldSeed The seed of the whole maze.
+     * @param chunkSize The number of rooms in each row & col of a chunk.
+     * @param maxChunks The number of chunks kept in memory (at least 1).
+     * @param generator The algorithm used to carve each chunk.
+     */
+    public ChunkedMaze(long worldSeed, int chunkSize, int maxChunks, MazeGenerator generator)
+    {
+        if (chunkSize < 2)
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        if (maxChunks < 1)
+            throw new IllegalArgumentException("Invalid number of chunks: " + maxChunks);
+
+        this.worldSeed = worldSeed;
+        this.chunkSize = chunkSize;
+        this.generator = generator;
+        this.maxChunks = maxChunks;
+        lastChunk = null;
+        generated = 0;
+
+        // access order, so the eldest entry is the least recently used chunk
+        chunks = new LinkedHashMap<Long, Chunk>(maxChunks * 4 / 3 + 1, 0.75f, true);
+        opened = new HashMap<Long, byte[]>();
+    }
+
+    /**
+     * @param x The row of the room, in world coordinates.
+     * @param y The column of the room, in world coordinates.
+     * @return The room, generating its chunk if it is not in memory.
+     */
+    @Override
+    public Room getRoom(int x, int y)
+    {
+        Chunk chunk = chunk(x, y);
+        int lx = Math.floorMod(x, chunkSize);
+        int ly = Math.floorMod(y, chunkSize);
+        int i = lx * chunkSize + ly;
+
+        if (chunk.rooms[i] == null)
+            chunk.rooms[i] = new Room(this, x, y);
+        return chunk.rooms[i];
+    }
+
+    /**
+     * @param x The row of the room, in world coordinates.
+     * @param y The column of the room, in world coordinates.
+     * @return The exit bits of the room (see MazeGrid).
+     */
+    @Override
+    public int getExits(int x, int y)
+    {
+        MazeGrid grid = chunk(x, y).grid;
+        return grid.getExits(grid.index(Math.floorMod(x, chunkSize) + 1, Math.floorMod(y, chunkSize) + 1));
+    }
+
+    /**
+     * Opens an exit on one side of a room and tells the listeners. The exit is also kept
+     * in the overlay of the chunk, so it is opened again if the chunk is dropped and generated again.
+     * @param x The row of the room, in world coordinates.
+     * @param y The column of the room, in world coordinates.
+     * @param direction One of MazeGrid.NORTH, SOUTH, EAST or WEST.
+     */
+    @Override
+    void addExit(int x, int y, int direction)
+    {
+        Chunk chunk = chunk(x, y);
+        int lx = Math.floorMod(x, chunkSize);
+        int ly = Math.floorMod(y, chunkSize);
+        int cell = chunk.grid.index(lx + 1, ly + 1);
+        if (chunk.grid.hasExit(cell, direction))
+            return;
+        chunk.grid.addExit(cell, direction);
+
+        byte[] changes = opened.get(chunk.key);
+        if (changes == null) {
+            changes = new byte[chunkSize * chunkSize];
+            opened.put(chunk.key, changes);
+        }
+        changes[lx * chunkSize + ly] |= direction;
+        exitAdded(x, y, direction);
+    }
+
+    /**
+     * An endless maze has no single grid; use getChunkGrid for one chunk.
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public MazeGrid getGrid()
+    {
+        throw new UnsupportedOperationException("An endless maze has no single grid");
+    }
+
+    /**
+     * An endless maze has no single index of what is in its rooms; every chunk has its own,
+     * read and changed through the rooms.
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public OccupancyIndex getOccupancy()
+    {
+        throw new UnsupportedOperationException("An endless maze has one occupancy index for every chunk");
+    }
+
+    /**
+     * @param x The row of the room, in world coordinates.
+     * @param y The column of the room, in world coordinates.
+     * @return The index of what is in the rooms of its chunk, generating the chunk if it is not in memory.
+     */
+    @Override
+    OccupancyIndex getOccupancy(int x, int y)
+    {
+        Chunk chunk = chunk(x, y);
+        if (chunk.occupancy == null)
+            chunk.occupancy = new OccupancyIndex(chunk.grid.getLength());
+        return chunk.occupancy;
+    }
+
+    /**
+     * @param x The row of the room, in world coordinates.
+     * @param y The column of the room, in world coordinates.
+     * @return The packed index of the room in the grid of its chunk.
+     */
+    @Override
+    int getCell(int x, int y)
+    {
+        return chunk(x, y).grid.index(Math.floorMod(x, chunkSize) + 1, Math.floorMod(y, chunkSize) + 1);
+    }
+
+    /**
+     * An endless maze has no size; use getChunkSize for the size of one chunk.
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public int getSize()
+    {
+        throw new UnsupportedOperationException("An endless maze has no size");
+    }
+
+    /**
+     * @return chunkSize The number of rooms in each row & col of a chunk.
+     */
+    public int getChunkSize() {return chunkSize;}
+
+    /**
+     * @param cx The chunk row.
+     * @param cy The chunk column.
+     * @return The grid of the chunk, with room (1, 1) at world room (cx * chunkSize, cy * chunkSize).
+     */
+    public MazeGrid getChunkGrid(int cx, int cy)
+    {
+        return chunk(cx * chunkSize, cy * chunkSize).grid;
+    }
+
+    /**
+     * @return The number of chunks in memory.
+     */
+    public int getLoadedChunks() {return chunks.size();}
+
+    /**
+     * @return The number of chunks generated so far, counting every regeneration of a dropped chunk.
+     */
+    public long getGeneratedChunks() {return generated;}
+
+    /**
+     * @return worldSeed The seed of the whole maze.
+     */
+    public long getWorldSeed() {return worldSeed;}
+
+    /**
+     * @param x The row of a room, in world coordinates.
+     * @param y The column of a room, in world coordinates.
+     * @return The chunk holding the room, generated if it is not in memory.
+     */
+    private Chunk chunk(int x, int y)
+    {
+        int cx = Math.floorDiv(x, chunkSize);
+        int cy = Math.floorDiv(y, chunkSize);
+        long key = key(cx, cy);
+        if (lastChunk != null && key == lastKey)
+            return lastChunk;
+
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = generate(cx, cy);
+            chunks.put(key, chunk);
+            if (chunks.size() > maxChunks)
+                evict(chunk);
+        }
+        lastKey = key;
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    /**
+     * Drops the chunk furthest from all the chunks with something in their rooms, counting the distance
+     * in chunks (the larger of the rows and columns between them), the least recently used one of those
+     * as far, or simply the least recently used chunk if nothing is in any room. A chunk with something
+     * in its rooms is never dropped, so if all the others have something there is one chunk too many
+     * until some of them are left.
+     * @param keep The chunk that was just generated, which is not dropped either.
+     */
+    private void evict(Chunk keep)
+    {
+        ArrayList<Chunk> occupied = new ArrayList<Chunk>();
+        for (Chunk chunk : chunks.values())
+            if (chunk.isOccupied())
+                occupied.add(chunk);
+
+        Chunk furthest = null;
+        long furthestDistance = -1;
+        for (Chunk chunk : chunks.values()) {
+            if (chunk == keep || chunk.isOccupied())
+                continue;
+            long distance = Long.MAX_VALUE; // as far as can be from nothing
+            for (Chunk other : occupied)
+                distance = Math.min(distance, Math.max(Math.abs((long) chunk.cx - other.cx), Math.abs((long) chunk.cy - other.cy)));
+            if (distance > furthestDistance) {
+                furthest = chunk;
+                furthestDistance = distance;
+            }
+        }
+        if (furthest != null)
+            chunks.remove(furthest.key);
+    }
+
+    /**
+     * Generates a chunk, opens its borders towards the four neighboring chunks,
+     * and opens again the exits opened through its rooms before it was dropped.
+     * @param cx The chunk row.
+     * @param cy The chunk column.
+     * @return The new chunk.
+     */
+    private Chunk generate(int cx, int cy)
+    {
+        Chunk chunk = new Chunk();
+        chunk.cx = cx;
+        chunk.cy = cy;
+        chunk.key = key(cx, cy);
+        chunk.grid = new MazeGrid(chunkSize, chunkSize);
+        chunk.rooms = new Room[chunkSize * chunkSize];
+        generator.generate(chunk.grid, new SplittableRandom(hash(key(cx, cy), 0)));
+        generated++;
+
+        // each border is owned by the chunk north or west of it, which picks where it opens;
+        // the openings only open this chunk's side, the neighbor opens its own side the same way
+        MazeGrid grid = chunk.grid;
+        grid.addExit(grid.index(1, opening(cx - 1, cy, 2)), MazeGrid.NORTH);
+        grid.addExit(grid.index(chunkSize, opening(cx, cy, 2)), MazeGrid.SOUTH);
+        grid.addExit(grid.index(opening(cx, cy - 1, 1), 1), MazeGrid.WEST);
+        grid.addExit(grid.index(opening(cx, cy, 1), chunkSize), MazeGrid.EAST);
+
+        byte[] changes = opened.get(chunk.key);
+        if (changes != null)
+            for (int i = 0; i < changes.length; i++)
+                if (changes[i] != 0)
+                    grid.addExit(grid.index(i / chunkSize + 1, i % chunkSize + 1), changes[i]);
+        return chunk;
+    }
+
+    /**
+     * @param cx The chunk row.
+     * @param cy The chunk column.
+     * @param border 1 for the east border of the chunk, 2 for its south border.
+     * @return The room (1 to chunkSize) along the border where it opens.
+     */
+    private int opening(int cx, int cy, int border)
+    {
+        return (int) ((hash(key(cx, cy), border) >>> 1) % chunkSize) + 1;
+    }
+
+    /**
+     * @param cx The chunk row.
+     * @param cy The chunk column.
+     * @return Both coordinates packed into one long.
+     */
+    private static long key(int cx, int cy)
+    {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Mixes the world seed with a chunk and a purpose, so every chunk and border gets its own
+     * well spread number without keeping anything in memory.
+     * @param key The packed chunk coordinates.
+     * @param salt What the number is for: 0 for the chunk seed, 1 and 2 for its borders.
+     * @return The mixed number.
+     */
+    private long hash(long key, int salt)
+    {
+        return ZobristHash.mix(worldSeed ^ ZobristHash.mix(key * 0x9E3779B97F4A7C15L + salt));
+    }
+
+    /**
+     * The walls of one chunk, the room views created in it so far, and what is in its rooms.
+     */
+    private static class Chunk
+    {
+        int cx, cy; // the chunk row and column
+        long key; // both packed into one long
+        MazeGrid grid;
+        Room[] rooms; // views created on first use
+        OccupancyIndex occupancy; // made when one of its rooms is first asked what it holds
+
+        /**
+         * @return True if there is something in at least one of its rooms.
+         */
+        boolean isOccupied() {return occupancy != null && occupancy.getCount() > 0;}
+    }
+}
\ No newline at end of file
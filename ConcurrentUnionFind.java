@@ -0,0 +1,69 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A lock-free disjoint-set forest over the integers 0 to n-1, safe to use from many threads.
+ * Parents are updated with compare-and-set. Roots are always linked below the root with the
+ * larger index, which keeps the forest acyclic without locks, and find compresses paths by
+ * halving, also with compare-and-set, so concurrent finds never undo each other's work.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class ConcurrentUnionFind
+{
+    private AtomicIntegerArray parent; // parent of every element, roots are their own parent
+
+    /**
+     * Constructor for objects of class ConcurrentUnionFind, with every element in a set of its own.
+     * @param n The number of elements.
+     */
+    public ConcurrentUnionFind(int n)
+    {
+        parent = new AtomicIntegerArray(n);
+
+        for (int i = 0; i < n; i++)
+            parent.set(i, i);
+    }
+
+    /**
+     * @param i An element.
+     * @return The root of the set containing the element at some point during the call.
+     */
+    public int find(int i)
+    {
+        while (true) {
+            int p = parent.get(i);
+            if (p == i)
+                return i;
+            int gp = parent.get(p);
+            parent.compareAndSet(i, p, gp);
+            i = gp;
+        }
+    }
+
+    /**
+     * Merges the sets containing two elements.
+     * Exactly one of several concurrent calls merging the same two sets returns true.
+     * @param a An element.
+     * @param b Another element.
+     * @return True if this call merged two different sets.
+     */
+    public boolean union(int a, int b)
+    {
+        while (true) {
+            a = find(a);
+            b = find(b);
+            if (a == b)
+                return false;
+
+            // link the smaller root below the larger one, retrying if it stopped being a root
+            if (a > b) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            if (parent.compareAndSet(a, a, b))
+                return true;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+import java.util.SplittableRandom;
+
+/**
+ * The randomized depth-first maze generation algorithm.
+ * Algorithm inspired by http://algs4.cs.princeton.edu/41graph/Maze.java.html.
+ *
+ * The carve is driven by an explicit stack of packed room indexes, so the depth of the maze
+ * is not limited by the thread stack, and the next room is picked directly from the
+ * unvisited neighbors. It can be restricted to a rectangular region of the grid, which lets
+ * TiledMazeGenerator carve several regions of the same grid at the same time.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class DepthFirstMazeGenerator implements MazeGenerator
+{
+    /**
+     * Carves a perfect maze over the whole grid, starting from the top left room.
+     * @param grid The grid to carve, with no exits yet.
+     * @param rng The random number stream used to pick the neighbors.
+     */
+    public void generate(MazeGrid grid, SplittableRandom rng)
+    {
+        carve(grid, 1, 1, rng);
+    }
+
+    /**
+     * @return The name of the algorithm.
+     */
+    public String getName() {return "depth-first";}
+
+    /**
+     * Carves a perfect maze over the whole grid, starting from (x, y).
+     * @param grid The grid to carve, with no exits yet.
+     * @param x The row of the room to start carving from.
+     * @param y The column of the room to start carving from.
+     * @param rng The random number stream used to pick the neighbors.
+     */
+    public void carve(MazeGrid grid, int x, int y, SplittableRandom rng)
+    {
+        carve(grid, 1, 1, grid.getRows(), grid.getCols(), x, y, rng);
+    }
+
+    /**
+     * Carves a perfect maze over a rectangular region of the grid, starting from (x, y).
+     * No wall on the edge of the region is knocked down.
+     * @param grid The grid to carve, with no exits in the region yet.
+     * @param top The first row of the region.
+     * @param left The first column of the region.
+     * @param bottom The last row of the region.
+     * @param right The last column of the region.
+     * @param x The row of the room to start carving from.
+     * @param y The column of the room to start carving from.
+     * @param rng The random number stream used to pick the neighbors.
+     */
+    public void carve(MazeGrid grid, int top, int left, int bottom, int right, int x, int y, SplittableRandom rng)
+    {
+        int stride = grid.getStride();
+        int[] stack = new int[(bottom - top + 1) * (right - left + 1) + 1]; // every room is pushed at most once
+        int[] unvisited = new int[4]; // directions of the unvisited neighbors of the current room
+        int depth = 0;
+
+        stack[depth++] = grid.index(x, y);
+
+        while (depth > 0) {
+            int cell = stack[depth - 1];
+            int cx = cell / stride;
+            int cy = cell - cx * stride;
+
+            // collect the neighbors inside the region that have not been carved yet
+            int count = 0;
+            if (cy < right && grid.isUntouched(cell + 1)) unvisited[count++] = MazeGrid.EAST;
+            if (cx < bottom && grid.isUntouched(cell + stride)) unvisited[count++] = MazeGrid.SOUTH;
+            if (cy > left && grid.isUntouched(cell - 1)) unvisited[count++] = MazeGrid.WEST;
+            if (cx > top && grid.isUntouched(cell - stride)) unvisited[count++] = MazeGrid.NORTH;
+
+            // dead end, so backtrack to the previous room
+            if (count == 0) {
+                depth--;
+                continue;
+            }
+
+            // choose one of the unvisited neighbors at random and knock down the wall between them
+            int direction = unvisited[rng.nextInt(count)];
+            grid.carve(cell, direction);
+            stack[depth++] = grid.neighbor(cell, direction);
+        }
+    }
+}
\ No newline at end of file
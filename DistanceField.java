@@ -0,0 +1,283 @@
+import java.util.Arrays;
+
+/**
+ * The distance from every room of a maze to one source room, by default the room before the exit,
+ * and the direction of the first step towards it, filled in by one breadth-first search.
+ *
+ * After that, the distance to the source is one array lookup for every room, and the
+ * shortest path to the source from anywhere is a walk along the directions with no search at all.
+ * Where several first steps are equally short, the direction is the lowest of them (see MazeGrid),
+ * so the same walls always give the same field, however it was reached.
+ *
+ * The field listens to the maze (see MazeListener) and repairs itself when a wall is opened:
+ * an opening can only make rooms closer, so only the rooms that get closer are visited again,
+ * usually a small part of the maze. A wall put back can make rooms further away in ways that
+ * are hard to follow, so then the whole field is searched again, the next time it is used.
+ * Changes that were never announced are caught by Maze.getModifications in the same way.
+ * A field that is no longer needed should be detached from its maze with dispose.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class DistanceField implements MazeListener
+{
+    public static final int UNREACHABLE = -1;
+
+    private Maze maze; // the maze the field was computed for
+    private MazeGrid grid;
+    private int source; // packed index of the room every distance is measured to
+    private int[] distance; // number of steps to the source, UNREACHABLE if there is no way
+    private byte[] toward; // direction of the first step towards the source, 0 at the source
+    private int[] queue; // breadth-first queue
+    private int computedAt; // the modifications of the maze when the field was computed
+    private int computations; // number of searches so far
+    private boolean stale; // true if a wall was put back since the field was computed
+    private int repairs; // number of openings repaired without a search
+    private long repairedRooms; // rooms that got closer in all the repairs
+
+    /**
+     * Constructor for objects of class DistanceField, measuring to the room before the exit (bottom right).
+     * @param maze The maze.
+     */
+    public DistanceField(Maze maze)
+    {
+        this(maze, maze.getSize(), maze.getSize());
+    }
+
+    /**
+     * Constructor for objects of class DistanceField.
+     * @param maze The maze.
+     * @param x The row of the source room.
+     * @param y The column of the source room.
+     */
+    public DistanceField(Maze maze, int x, int y)
+    {
+        this.maze = maze;
+        grid = maze.getGrid();
+        source = grid.index(x, y);
+        distance = new int[grid.getLength()];
+        toward = new byte[grid.getLength()];
+        queue = new int[grid.getLength()];
+        computations = 0;
+        compute();
+        maze.addMazeListener(this);
+    }
+
+    /**
+     * Stops listening to the maze, so the field can be garbage collected.
+     */
+    public void dispose()
+    {
+        maze.removeMazeListener(this);
+    }
+
+    /**
+     * Repairs the field after a change to the walls.
+     * @param x The row of the room whose side changed.
+     * @param y The column of the room whose side changed.
+     * @param direction The side of the room.
+     * @param opened True if an exit was opened, false if a wall was put back.
+     */
+    public void wallChanged(int x, int y, int direction, boolean opened)
+    {
+        if (!opened || stale) {
+            stale = true;
+            return;
+        }
+
+        // the room can now be left through the new exit, which may be a shorter way
+        int cell = grid.index(x, y);
+        int next = grid.neighbor(cell, direction);
+        if (!grid.isBoundary(next) && distance[next] != UNREACHABLE) {
+            if (distance[cell] == UNREACHABLE || distance[next] + 1 < distance[cell]) {
+                distance[cell] = distance[next] + 1;
+                toward[cell] = (byte) direction;
+                repairFrom(cell);
+            }
+            else if (distance[next] + 1 == distance[cell] && direction < toward[cell]) {
+                toward[cell] = (byte) direction; // just as short a way, in a lower direction
+            }
+        }
+        repairs++;
+
+        // the change is accounted for, unless others happened without being announced
+        if (computedAt == maze.getModifications() - 1)
+            computedAt = maze.getModifications();
+    }
+
+    /**
+     * Spreads a shorter distance from one room to every room that gets closer through it.
+     * Only one room starts closer, so the breadth-first order settles every room at its first visit;
+     * a room that is as close through a room that got closer as before takes the lower direction.
+     * @param cell The packed index of the room that got closer.
+     */
+    private void repairFrom(int cell)
+    {
+        int head = 0, tail = 0;
+        queue[tail++] = cell;
+
+        while (head < tail) {
+            cell = queue[head++];
+            repairedRooms++;
+            for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1) {
+                int next = grid.neighbor(cell, direction);
+                int back = MazeGrid.opposite(direction);
+                if (grid.isBoundary(next) || !grid.hasExit(next, back))
+                    continue;
+                if (distance[next] != UNREACHABLE && distance[next] <= distance[cell] + 1) {
+                    if (distance[next] == distance[cell] + 1 && back < toward[next])
+                        toward[next] = (byte) back;
+                    continue;
+                }
+                distance[next] = distance[cell] + 1;
+                toward[next] = (byte) back;
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    /**
+     * Computes the field again if the walls of the maze have changed since it was computed.
+     */
+    public void update()
+    {
+        if (stale || maze.getModifications() != computedAt)
+            compute();
+    }
+
+    /**
+     * Breadth-first search out of the source. A room gets its distance through a neighbor
+     * only if the room itself has an exit towards that neighbor, since that is the way it is left,
+     * and its direction towards the lowest of the neighbors it is reached through at that distance.
+     */
+    private void compute()
+    {
+        computedAt = maze.getModifications();
+        computations++;
+        stale = false;
+
+        Arrays.fill(distance, UNREACHABLE);
+        int head = 0, tail = 0;
+        distance[source] = 0;
+        toward[source] = 0;
+        queue[tail++] = source;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1) {
+                int next = grid.neighbor(cell, direction);
+                int back = MazeGrid.opposite(direction);
+                if (grid.isBoundary(next) || !grid.hasExit(next, back))
+                    continue;
+                if (distance[next] != UNREACHABLE) {
+                    if (distance[next] == distance[cell] + 1 && back < toward[next])
+                        toward[next] = (byte) back;
+                    continue;
+                }
+                distance[next] = distance[cell] + 1;
+                toward[next] = (byte) back;
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    /**
+     * Moves the source to another room and searches the whole field again, unless it is already there,
+     * so a field following something that moves, like a player chased by the evil circles (see EnemySystem),
+     * costs one search for every room it moves to, and nothing while it stays.
+     * @param x The row of the new source room.
+     * @param y The column of the new source room.
+     */
+    public void setSource(int x, int y)
+    {
+        int cell = grid.index(x, y);
+        if (cell == source)
+            return;
+        source = cell;
+        compute();
+    }
+
+    /**
+     * @param x The row of a room.
+     * @param y The column of a room.
+     * @return The number of steps from the room to the source, or UNREACHABLE.
+     */
+    public int getDistance(int x, int y)
+    {
+        return getDistance(grid.index(x, y));
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @return The number of steps from the room to the source, or UNREACHABLE.
+     */
+    public int getDistance(int cell)
+    {
+        update();
+        return distance[cell];
+    }
+
+    /**
+     * @param x The row of a room.
+     * @param y The column of a room.
+     * @return The direction of the first step towards the source (MazeGrid.NORTH, SOUTH, EAST or WEST),
+     *         or 0 at the source and in rooms with no way to it.
+     */
+    public int getDirection(int x, int y)
+    {
+        return getDirection(grid.index(x, y));
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @return The direction of the first step towards the source, or 0 at the source and in rooms with no way to it.
+     */
+    public int getDirection(int cell)
+    {
+        update();
+        return distance[cell] == UNREACHABLE ? 0 : toward[cell];
+    }
+
+    /**
+     * Walks the directions from a room to the source.
+     * @param x The row of the first room.
+     * @param y The column of the first room.
+     * @return The packed indices of the rooms of a shortest path, from the room to the source,
+     *         or null if there is no way to the source.
+     */
+    public int[] pathToSource(int x, int y)
+    {
+        update();
+        int cell = grid.index(x, y);
+        if (distance[cell] == UNREACHABLE)
+            return null;
+
+        int[] path = new int[distance[cell] + 1];
+        path[0] = cell;
+        for (int i = 1; i < path.length; i++) {
+            cell = grid.neighbor(cell, toward[cell]);
+            path[i] = cell;
+        }
+        return path;
+    }
+
+    /**
+     * @return The packed index of the source room.
+     */
+    public int getSource() {return source;}
+
+    /**
+     * @return The number of times the whole field has been searched.
+     */
+    public int getComputations() {return computations;}
+
+    /**
+     * @return The number of opened exits repaired without searching the whole field.
+     */
+    public int getRepairs() {return repairs;}
+
+    /**
+     * @return The number of rooms visited by all the repairs so far.
+     */
+    public long getRepairedRooms() {return repairedRooms;}
+}
\ No newline at end of file
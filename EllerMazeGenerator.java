@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a perfect maze one row at a time using Eller's algorithm.
+ * Only the set labels of the current row are kept in memory, so the memory used
+ * is proportional to the width of the maze and the number of rows is unlimited.
+ * Each row is handed to a MazeRowSink as soon as it is finished, using the same
+ * exit bits as MazeGrid.
+ * Algorithm described at http://www.neocomputer.org/projects/eller.html.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class EllerMazeGenerator
+{
+    private int rows; // number of rows to generate
+    private int cols; // number of rooms in each row
+    private SplittableRandom rng;
+
+    // per-row state, all of it sized by the width of the maze
+    private byte[] row; // exit bits of the current row
+    private int[] set; // set label of each room in the current row, -1 if it has none yet
+    private int[] parent; // union-find over the set labels, used to merge sets within a row
+    private int[] size; // number of rooms in the current row carrying each label
+    private int[] free; // stack of labels not used by any room
+    private int freeCount;
+    private int[] seen; // number of rooms of each set looked at so far when going down
+    private int[] pick; // the room of each set that is forced to go down
+
+    /**
+     * Constructor for objects of class EllerMazeGenerator
+     * @param rows The number of rows of the maze.
+     * @param cols The number of rooms in each row.
+     * @param rng The random number stream used to generate the maze.
+     */
+    public EllerMazeGenerator(int rows, int cols, SplittableRandom rng)
+    {
+        if (rows < 1 || cols < 1)
+            throw new IllegalArgumentException("Invalid maze dimensions: " + rows + " x " + cols);
+
+        this.rows = rows;
+        this.cols = cols;
+        this.rng = rng;
+    }
+
+    /**
+     * Generates the maze and feeds it to the sink row by row.
+     * @param sink The sink receiving the rows.
+     * @throws IOException If the sink fails to accept a row.
+     */
+    public void generate(MazeRowSink sink) throws IOException
+    {
+        row = new byte[cols];
+        set = new int[cols];
+        parent = new int[cols];
+        size = new int[cols];
+        free = new int[cols];
+        seen = new int[cols];
+        pick = new int[cols];
+
+        // every label is free and no room belongs to a set yet
+        freeCount = 0;
+        for (int l = cols - 1; l >= 0; l--)
+            free[freeCount++] = l;
+        for (int c = 0; c < cols; c++)
+            set[c] = -1;
+
+        for (int x = 1; x <= rows; x++) {
+            boolean last = x == rows;
+
+            // rooms that were not joined from above start in a set of their own
+            for (int c = 0; c < cols; c++) {
+                if (set[c] < 0) {
+                    int l = free[--freeCount];
+                    parent[l] = l;
+                    size[l] = 1;
+                    set[c] = l;
+                }
+            }
+
+            // randomly join adjacent rooms of different sets, and join all of them in the last row
+            for (int c = 0; c < cols - 1; c++) {
+                int a = find(set[c]);
+                int b = find(set[c + 1]);
+                if (a != b && (last || rng.nextBoolean())) {
+                    parent[a] = b;
+                    row[c] |= MazeGrid.EAST;
+                    row[c + 1] |= MazeGrid.WEST;
+                }
+            }
+
+            // relabel the rooms with the root of their set and free the labels that disappeared
+            for (int c = 0; c < cols; c++) {
+                int root = find(set[c]);
+                if (root != set[c]) {
+                    size[root]++;
+                    release(set[c]);
+                    set[c] = root;
+                }
+            }
+
+            if (!last)
+                goDown();
+
+            sink.acceptRow(x, row);
+
+            // the south exits of this row become the north exits of the next one
+            for (int c = 0; c < cols; c++)
+                row[c] = (row[c] & MazeGrid.SOUTH) != 0 ? (byte) MazeGrid.NORTH : 0;
+        }
+    }
+
+    /**
+     * Opens at least one south exit for every set in the current row, and a random number of others.
+     * Rooms that do not go down leave their set, so their label may become free.
+     */
+    private void goDown()
+    {
+        // choose the room that is forced to go down in each set (reservoir sampling)
+        for (int c = 0; c < cols; c++)
+            seen[set[c]] = 0;
+        for (int c = 0; c < cols; c++) {
+            int l = set[c];
+            seen[l]++;
+            if (rng.nextInt(seen[l]) == 0)
+                pick[l] = c;
+        }
+
+        for (int c = 0; c < cols; c++) {
+            int l = set[c];
+            if (pick[l] == c || rng.nextBoolean())
+                row[c] |= MazeGrid.SOUTH;
+        }
+
+        // the rooms below the ones that did not go down start without a set
+        for (int c = 0; c < cols; c++) {
+            if ((row[c] & MazeGrid.SOUTH) == 0) {
+                release(set[c]);
+                set[c] = -1;
+            }
+        }
+    }
+
+    /**
+     * Removes one room from a label, freeing the label once no room carries it.
+     * @param label The label of the room.
+     */
+    private void release(int label)
+    {
+        if (--size[label] == 0)
+            free[freeCount++] = label;
+    }
+
+    /**
+     * @param label A set label.
+     * @return The label at the root of its set, compressing the path on the way.
+     */
+    private int find(int label)
+    {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+}
\ No newline at end of file
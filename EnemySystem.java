@@ -0,0 +1,648 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The evil circles of a maze, any number of them, stored as parallel arrays instead of objects:
+ * the room of every enemy, the room it was in before the last tick, and its state flags,
+ * so one tick is a tight loop over a few arrays, whatever the number of enemies.
+ *
+ * An enemy wanders at random: every tick it leaves its room through one of the exits open to it,
+ * all of them equally likely. The exits open to enemies are kept for every room as a 4-bit mask,
+ * which leaves out the boundary ring and the exit room, and the directions of every mask are listed
+ * in a table, so a move is a single random draw into the list of its room, with no retries.
+ * The masks are computed once and kept up to date by listening to the maze (see MazeListener).
+ *
+ * Enemies can also chase the players (see setPursuit): with some probability, every tick, an enemy
+ * takes the first step of a shortest way to the nearest player instead of a random exit.
+ * The ways are read from one DistanceField out of the room of each player, shared by all the enemies,
+ * so a chasing step costs a lookup in each field, whatever the number of enemies,
+ * and the fields are only searched again when a player moves to another room.
+ *
+ * The enemies are also kept in the OccupancyIndex of the maze, as entities of the kind
+ * OccupancyIndex.EVIL tagged with their numbers, which the room views use for isEvilInRoom,
+ * and every move is reported to the hash of the maze (see ZobristHash.entity).
+ * Enemies are numbered from 0 in the order they are added.
+ *
+ * For very many enemies, tick(seed) spreads the work over a ForkJoinPool in two phases.
+ * First every enemy proposes its move, reading only its own room and the shared masks and fields.
+ * Then the moves are resolved region by region, a region being a band of consecutive cells whose
+ * bitset words and room lists no other region shares: one pass takes the enemies out of the
+ * rooms they leave, a second one puts them in the rooms they enter, each enemy in number order.
+ * The random numbers come from hashing the seed, the tick and the enemy, not from a stream,
+ * so the result is the same, bit for bit, on any number of threads, or with no pool at all.
+ *
+ * Chasing enemies all take the same shortest way and soon pile into one corridor. With cooperation
+ * turned on (see setCooperation), they plan a few ticks ahead in turn, each one claiming the rooms of its
+ * plan in a ReservationTable and keeping out of the rooms, and the swaps of rooms, claimed before it.
+ * An enemy whose way is claimed waits, or takes another exit if its own room is claimed, and only the
+ * first step of every plan is taken before planning again. The planning reads the claims of the
+ * enemies before, so it runs on the calling thread, in an order that turns every tick so no enemy
+ * always goes first, and costs a few table lookups for every enemy and step planned.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class EnemySystem implements MazeListener
+{
+    public static final int ALIVE = 1; // flag of an enemy still in the maze
+
+    private static final int REGION_SHIFT = 12; // a region is 4096 cells, a multiple of the 64 of a bitset word
+    private static final int ENEMIES_PER_TASK = 2048; // enemies below which a parallel task is not split
+
+    private static final int[][] DIRECTIONS = new int[16][]; // the directions of every mask, in order
+    static {
+        for (int mask = 0; mask < 16; mask++) {
+            DIRECTIONS[mask] = new int[Integer.bitCount(mask)];
+            int n = 0;
+            for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1)
+                if ((mask & direction) != 0)
+                    DIRECTIONS[mask][n++] = direction;
+        }
+    }
+
+    private Maze maze;
+    private MazeGrid grid;
+    private byte[] open; // exits open to enemies, for every cell
+    private OccupancyIndex occupancy; // where the living enemies are, with everything else in the maze
+    private int count; // number of enemies, dead ones included
+    private int[] cell; // packed index of the room of every enemy
+    private int[] previous; // packed index of the room of every enemy before the last tick
+    private int[] entity; // number of every living enemy in the occupancy index
+    private byte[] flags; // ALIVE and any later state of every enemy
+    private long ticks; // number of ticks so far
+    private DistanceField[] targets; // fields out of the rooms of the players chased, none for a random walk
+    private double chase; // probability that a living enemy steps towards the nearest target
+    private ForkJoinPool pool; // pool the parallel tick runs on, null to run it on the calling thread
+    private int[] proposed; // room every enemy moves to in a parallel tick
+    private int[] leaving, arriving; // the moving enemies, by the region they leave and the region they enter
+    private int[] leavingStart, arrivingStart; // where the enemies of every region start in leaving and arriving
+    private long[] regionKeys; // exclusive or of the hash keys toggled in every region by a parallel tick
+    private int horizon; // ticks chasing enemies plan ahead when they cooperate, 0 if they do not
+    private ReservationTable reservations; // the rooms claimed by the cooperating enemies, null if they do not
+    private int[] tried; // the rooms an enemy tries to move to while planning, in order
+
+    /**
+     * Constructor for objects of class EnemySystem, with no enemies yet, running every tick on the calling thread.
+     * The system becomes the one of the maze, whose rooms then report its enemies.
+     * @param maze The maze the enemies wander in.
+     * @param capacity The number of enemies expected; more can be added.
+     */
+    public EnemySystem(Maze maze, int capacity)
+    {
+        this(maze, capacity, null);
+    }
+
+    /**
+     * Constructor for objects of class EnemySystem, with no enemies yet.
+     * The system becomes the one of the maze, whose rooms then report its enemies.
+     * @param maze The maze the enemies wander in.
+     * @param capacity The number of enemies expected; more can be added.
+     * @param pool The pool tick(seed) runs on, or null to run it on the calling thread.
+     */
+    public EnemySystem(Maze maze, int capacity, ForkJoinPool pool)
+    {
+        this.maze = maze;
+        this.pool = pool;
+        grid = maze.getGrid();
+        open = new byte[grid.getLength()];
+        occupancy = maze.getOccupancy();
+        cell = new int[Math.max(capacity, 1)];
+        previous = new int[cell.length];
+        flags = new byte[cell.length];
+        entity = new int[cell.length];
+        proposed = new int[cell.length];
+        leaving = new int[cell.length];
+        arriving = new int[cell.length];
+        int regions = (grid.getLength() >>> REGION_SHIFT) + 1;
+        leavingStart = new int[regions + 1];
+        arrivingStart = new int[regions + 1];
+        regionKeys = new long[regions];
+        tried = new int[4];
+        count = 0;
+        targets = new DistanceField[0];
+        chase = 0;
+
+        for (int x = 1; x <= grid.getRows(); x++)
+            for (int y = 1; y <= grid.getCols(); y++)
+                updateOpen(grid.index(x, y));
+
+        maze.addMazeListener(this);
+        maze.setEnemies(this);
+    }
+
+    /**
+     * Puts a new enemy in a room.
+     * @param x The row of the room.
+     * @param y The column of the room.
+     * @return The number of the new enemy.
+     */
+    public int add(int x, int y)
+    {
+        if (count == cell.length) {
+            cell = Arrays.copyOf(cell, count * 2);
+            previous = Arrays.copyOf(previous, count * 2);
+            flags = Arrays.copyOf(flags, count * 2);
+            entity = Arrays.copyOf(entity, count * 2);
+            proposed = new int[count * 2];
+            leaving = new int[count * 2];
+            arriving = new int[count * 2];
+        }
+
+        int id = count++;
+        cell[id] = grid.index(x, y);
+        previous[id] = cell[id];
+        flags[id] = ALIVE;
+        entity[id] = occupancy.add(OccupancyIndex.EVIL, id, cell[id]);
+        maze.toggleFeature(x, y, ZobristHash.entity(OccupancyIndex.EVIL, id));
+        return id;
+    }
+
+    /**
+     * Takes an enemy out of the maze for good.
+     * @param id The number of the enemy.
+     */
+    public void kill(int id)
+    {
+        if ((flags[id] & ALIVE) == 0)
+            return;
+        flags[id] &= ~ALIVE;
+        occupancy.remove(entity[id]);
+        maze.toggleFeature(grid.getX(cell[id]), grid.getY(cell[id]), ZobristHash.entity(OccupancyIndex.EVIL, id));
+    }
+
+    /**
+     * Makes the enemies chase one or more players. With no targets or a probability of 0,
+     * they wander at random again, drawing the same random numbers as before.
+     * @param chase The probability, from 0 to 1, that an enemy steps towards the nearest target in a tick;
+     *              the higher, the harder the game.
+     * @param targets One field out of the room of each player chased, kept on the player with setSource.
+     */
+    public void setPursuit(double chase, DistanceField... targets)
+    {
+        if (chase < 0 || chase > 1)
+            throw new IllegalArgumentException("Invalid chase probability: " + chase);
+
+        this.chase = chase;
+        this.targets = targets.clone();
+    }
+
+    /**
+     * Moves every living enemy one room, towards the nearest player it chases (see setPursuit),
+     * or else through one of the exits open to it, picked at random.
+     * An enemy in a room with no exit open to it stays where it is, and so does a chasing enemy that has caught its player.
+     * When the enemies cooperate, this draws one seed from the stream and runs tick(seed).
+     * @param rng The random number stream of the enemies.
+     */
+    public void tick(SplittableRandom rng)
+    {
+        if (horizon > 0) {
+            tick(rng.nextLong());
+            return;
+        }
+
+        for (int id = 0; id < count; id++) {
+            int from = cell[id];
+            previous[id] = from;
+            if ((flags[id] & ALIVE) == 0)
+                continue;
+
+            int[] choices = DIRECTIONS[open[from]];
+            if (choices.length == 0)
+                continue;
+            int direction = -1;
+            if (chase > 0 && targets.length > 0 && rng.nextDouble() < chase)
+                direction = pursue(from);
+            if (direction == 0)
+                continue;
+            if (direction < 0)
+                direction = choices.length == 1 ? choices[0] : choices[rng.nextInt(choices.length)];
+            int to = grid.neighbor(from, direction);
+
+            cell[id] = to;
+            occupancy.move(entity[id], to);
+            long feature = ZobristHash.entity(OccupancyIndex.EVIL, id);
+            maze.toggleFeature(grid.getX(from), grid.getY(from), feature);
+            maze.toggleFeature(grid.getX(to), grid.getY(to), feature);
+        }
+        ticks++;
+    }
+
+    /**
+     * Moves every living enemy one room like tick(rng), but in parallel on the pool of the system,
+     * drawing its random numbers from the seed, the number of the tick and the number of the enemy.
+     * The same seeds give the same moves on any number of threads, though not the moves of tick(rng).
+     * @param seed The seed of this tick, for example drawn from the random number stream of the enemies.
+     */
+    public void tick(long seed)
+    {
+        for (DistanceField target : targets)
+            target.update(); // searched now, if needed, so the tasks only read the fields
+
+        // propose: every enemy picks the room it moves to, planning in turn if they cooperate
+        if (horizon > 0)
+            plan(seed);
+        else
+            run(new Step(Step.PROPOSE, seed, 0, count), count);
+
+        // sort the moving enemies by the regions they leave and enter, keeping them in number order
+        int regions = regionKeys.length;
+        Arrays.fill(leavingStart, 0);
+        Arrays.fill(arrivingStart, 0);
+        for (int id = 0; id < count; id++) {
+            if (proposed[id] != cell[id]) {
+                leavingStart[(cell[id] >>> REGION_SHIFT) + 1]++;
+                arrivingStart[(proposed[id] >>> REGION_SHIFT) + 1]++;
+            }
+        }
+        for (int r = 0; r < regions; r++) {
+            leavingStart[r + 1] += leavingStart[r];
+            arrivingStart[r + 1] += arrivingStart[r];
+        }
+        int moving = leavingStart[regions];
+        for (int id = 0; id < count; id++) {
+            if (proposed[id] != cell[id]) {
+                leaving[leavingStart[cell[id] >>> REGION_SHIFT]++] = id;
+                arriving[arrivingStart[proposed[id] >>> REGION_SHIFT]++] = id;
+            }
+        }
+        for (int r = regions; r > 0; r--) { // every start was moved on to the next region
+            leavingStart[r] = leavingStart[r - 1];
+            arrivingStart[r] = arrivingStart[r - 1];
+        }
+        leavingStart[0] = 0;
+        arrivingStart[0] = 0;
+
+        // resolve: every region takes out the enemies leaving it, then puts in the ones entering it
+        Arrays.fill(regionKeys, 0);
+        run(new Step(Step.LEAVE, seed, 0, regions), moving);
+        run(new Step(Step.ENTER, seed, 0, regions), moving);
+
+        long keys = 0;
+        for (long regionKey : regionKeys)
+            keys ^= regionKey;
+        maze.toggleKeys(keys);
+        ticks++;
+    }
+
+    /**
+     * Runs one phase of a parallel tick, on the pool if there is one and the work is worth it.
+     * @param step The task of the whole phase.
+     * @param enemies The number of enemies it handles.
+     */
+    private void run(Step step, int enemies)
+    {
+        if (pool != null && enemies > ENEMIES_PER_TASK)
+            pool.invoke(step);
+        else
+            step.compute();
+    }
+
+    /**
+     * Picks the room an enemy moves to in a parallel tick, like tick(rng) but with a counter-based random number.
+     * @param id The number of the enemy.
+     * @param seed The seed of the tick.
+     * @return The packed index of the room, the one it is in if it does not move.
+     */
+    private int propose(int id, long seed)
+    {
+        int from = cell[id];
+        previous[id] = from;
+        if ((flags[id] & ALIVE) == 0)
+            return from;
+        int[] choices = DIRECTIONS[open[from]];
+        if (choices.length == 0)
+            return from;
+
+        long draw = draw(seed, id);
+        int direction = -1;
+        if (chase > 0 && targets.length > 0 && (draw >>> 11) * 0x1.0p-53 < chase)
+            direction = pursue(from);
+        if (direction == 0)
+            return from;
+        if (direction < 0)
+            direction = choices[(int) (((draw & 0xFFFFFFFFL) * choices.length) >>> 32)];
+        return grid.neighbor(from, direction);
+    }
+
+    /**
+     * The random number of an enemy in a tick: its top 53 bits decide whether the enemy chases,
+     * and its bottom 32 bits pick the random exit.
+     * @param seed The seed of the tick.
+     * @param id The number of the enemy.
+     * @return A random number that only depends on the seed, the tick and the enemy.
+     */
+    private long draw(long seed, int id)
+    {
+        return ZobristHash.mix(seed ^ ZobristHash.mix(ticks * 0x9E3779B97F4A7C15L + id));
+    }
+
+    /**
+     * Makes the enemies plan their moves around each other, or stop doing so.
+     * @param horizon The number of ticks chasing enemies plan ahead, or 0 for no cooperation;
+     *                wandering enemies only claim their next room.
+     */
+    public void setCooperation(int horizon)
+    {
+        if (horizon < 0)
+            throw new IllegalArgumentException("Invalid horizon: " + horizon);
+
+        this.horizon = horizon;
+        reservations = horizon > 0 ? new ReservationTable(Math.max(count, 1) * (horizon + 1)) : null;
+    }
+
+    /**
+     * @return The number of ticks chasing enemies plan ahead, 0 if they do not cooperate.
+     */
+    public int getHorizon() {return horizon;}
+
+    /**
+     * Plans the moves of all the living enemies in turn, starting with a different enemy every tick.
+     * Every enemy first claims the room it is in now, so that nobody plans to swap rooms with it,
+     * and the same room at the next tick, so that nobody plans to walk into it before it has planned
+     * to leave; it gives that room up once it has.
+     * @param seed The seed of the tick.
+     */
+    private void plan(long seed)
+    {
+        reservations.clear(count * (horizon + 2));
+        for (int id = 0; id < count; id++) {
+            if ((flags[id] & ALIVE) != 0) {
+                reservations.reserve(cell[id], ticks, id);
+                reservations.reserve(cell[id], ticks + 1, id);
+            }
+        }
+
+        int first = count == 0 ? 0 : (int) (ticks % count);
+        for (int k = 0; k < count; k++) {
+            int id = first + k < count ? first + k : first + k - count;
+            proposed[id] = planMoves(id, seed);
+        }
+    }
+
+    /**
+     * Plans the next moves of one enemy: as many as the horizon for a chasing enemy,
+     * the next one only for a wandering one, claiming the rooms on the way.
+     * @param id The number of the enemy.
+     * @param seed The seed of the tick.
+     * @return The packed index of the room the enemy moves to in this tick.
+     */
+    private int planMoves(int id, long seed)
+    {
+        int from = cell[id];
+        previous[id] = from;
+        if ((flags[id] & ALIVE) == 0)
+            return from;
+
+        long draw = draw(seed, id);
+        DistanceField target = null;
+        if (chase > 0 && targets.length > 0 && (draw >>> 11) * 0x1.0p-53 < chase)
+            target = nearest(from);
+
+        int room = from, next = from;
+        for (int t = 1; t <= (target != null ? horizon : 1); t++) {
+            room = planStep(id, room, ticks + t, target, draw);
+            if (t == 1) {
+                next = room;
+                if (next != from)
+                    reservations.release(from, ticks + 1, id);
+            }
+            if (target != null && target.getDistance(room) == 0)
+                break; // caught up: nothing more to plan
+        }
+        return next;
+    }
+
+    /**
+     * Picks the room an enemy is in at one tick of its plan and claims it. A chasing enemy tries the exits
+     * that get it closer first, then waiting, then the others; a wandering one tries the exits from a random one
+     * on, then waiting. The room of a target is never claimed, so any number of enemies can catch a player.
+     * @param id The number of the enemy.
+     * @param room The packed index of the room it is in at the tick before.
+     * @param tick The tick.
+     * @param target The field of the target it chases, or null if it wanders.
+     * @param draw The random number of the enemy in this tick.
+     * @return The packed index of the room it is in at the tick, the same room if it waits.
+     */
+    private int planStep(int id, int room, long tick, DistanceField target, long draw)
+    {
+        int[] choices = DIRECTIONS[open[room]];
+        int n = choices.length;
+        int[] rooms = tried;
+        int closer = 0; // rooms before waiting
+
+        if (target != null) {
+            int here = target.getDistance(room);
+            if (here == 0)
+                return room;
+            // the neighbors by distance to the target, closest first
+            for (int i = 0; i < n; i++) {
+                int next = grid.neighbor(room, choices[i]);
+                int distance = target.getDistance(next);
+                if (distance == DistanceField.UNREACHABLE)
+                    continue;
+                int j = closer++;
+                while (j > 0 && target.getDistance(rooms[j - 1]) > distance) {
+                    rooms[j] = rooms[j - 1];
+                    j--;
+                }
+                rooms[j] = next;
+            }
+            n = closer;
+            closer = 0;
+            while (closer < n && target.getDistance(rooms[closer]) < here)
+                closer++;
+        }
+        else {
+            int start = n == 0 ? 0 : (int) (((draw & 0xFFFFFFFFL) * n) >>> 32);
+            for (int i = 0; i < n; i++)
+                rooms[i] = grid.neighbor(room, choices[(start + i) % n]);
+            closer = n;
+        }
+
+        for (int i = 0; i <= n; i++) {
+            if (i == closer && reservations.reserve(room, tick, id))
+                return room; // wait
+            if (i == n)
+                break;
+            int next = rooms[i];
+            if (target != null && target.getDistance(next) == 0)
+                return next;
+            int other = reservations.getOwner(next, tick - 1); // coming the other way?
+            if (other != ReservationTable.NONE && other != id && reservations.getOwner(room, tick) == other)
+                continue;
+            if (reservations.reserve(next, tick, id))
+                return next;
+        }
+        return room; // nowhere free: stay, even if somebody else has claimed the room
+    }
+
+    /**
+     * Keeps the exits open to enemies up to date when a wall changes.
+     * @param x The row of the room whose side changed.
+     * @param y The column of the room whose side changed.
+     * @param direction The side of the room.
+     * @param opened True if an exit was opened, false if a wall was put back.
+     */
+    public void wallChanged(int x, int y, int direction, boolean opened)
+    {
+        int changed = grid.index(x, y);
+        if (!grid.isBoundary(changed))
+            updateOpen(changed);
+    }
+
+    /**
+     * @param x The row of a room.
+     * @param y The column of a room.
+     * @return True if at least one living enemy is in the room.
+     */
+    public boolean isOccupied(int x, int y) {return occupancy.has(OccupancyIndex.EVIL, grid.index(x, y));}
+
+    /**
+     * @param x The row of a room.
+     * @param y The column of a room.
+     * @return The number of living enemies in the room.
+     */
+    public int getOccupants(int x, int y) {return occupancy.count(OccupancyIndex.EVIL, grid.index(x, y));}
+
+    /**
+     * @param id The number of an enemy.
+     * @return True if the enemy has not been killed.
+     */
+    public boolean isAlive(int id) {return (flags[id] & ALIVE) != 0;}
+
+    /**
+     * @param id The number of an enemy.
+     * @return The packed index of its room.
+     */
+    public int getCell(int id) {return cell[id];}
+
+    /**
+     * @param id The number of an enemy.
+     * @return The packed index of its room before the last tick.
+     */
+    public int getPreviousCell(int id) {return previous[id];}
+
+    /**
+     * @return The number of enemies added, dead ones included.
+     */
+    public int getCount() {return count;}
+
+    /**
+     * @return The number of ticks so far.
+     */
+    public long getTicks() {return ticks;}
+
+    /**
+     * @return The probability that an enemy steps towards the nearest target in a tick.
+     */
+    public double getChase() {return chase;}
+
+    /**
+     * @return grid The grid holding the walls of the maze.
+     */
+    public MazeGrid getGrid() {return grid;}
+
+    /**
+     * Finds the first step from a room towards the nearest target.
+     * The fields never lead through the boundary ring, so the step is always open to enemies.
+     * @param room The packed index of the room.
+     * @return The direction of the step, 0 if a target is in the room, or -1 if no target can be reached.
+     */
+    private int pursue(int room)
+    {
+        DistanceField target = nearest(room);
+        return target == null ? -1 : target.getDirection(room);
+    }
+
+    /**
+     * @param room The packed index of a room.
+     * @return The field of the target nearest to the room, or null if no target can be reached from it.
+     */
+    private DistanceField nearest(int room)
+    {
+        DistanceField nearest = null;
+        for (DistanceField target : targets) {
+            int distance = target.getDistance(room);
+            if (distance != DistanceField.UNREACHABLE && (nearest == null || distance < nearest.getDistance(room)))
+                nearest = target;
+        }
+        return nearest;
+    }
+
+    /**
+     * One phase of a parallel tick over a range of enemies or regions, splitting it in halves
+     * until few enough enemies are left.
+     */
+    private class Step extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        static final int PROPOSE = 0, LEAVE = 1, ENTER = 2; // the phases
+
+        private int phase;
+        private long seed; // the seed of the tick
+        private int from, to; // range of enemies to propose for, or of regions to resolve
+
+        public Step(int phase, long seed, int from, int to)
+        {
+            this.phase = phase;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            int enemies = phase == PROPOSE ? to - from
+                        : phase == LEAVE ? leavingStart[to] - leavingStart[from] : arrivingStart[to] - arrivingStart[from];
+            if (pool != null && enemies > ENEMIES_PER_TASK && to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Step(phase, seed, from, middle),
+                          new Step(phase, seed, middle, to));
+                return;
+            }
+
+            if (phase == PROPOSE) {
+                for (int id = from; id < to; id++)
+                    proposed[id] = propose(id, seed);
+                return;
+            }
+
+            for (int r = from; r < to; r++) {
+                long keys = 0;
+                if (phase == LEAVE) {
+                    for (int i = leavingStart[r]; i < leavingStart[r + 1]; i++) {
+                        int id = leaving[i];
+                        occupancy.detach(entity[id]);
+                        keys ^= ZobristHash.key(grid.getX(cell[id]), grid.getY(cell[id]), ZobristHash.entity(OccupancyIndex.EVIL, id));
+                    }
+                }
+                else {
+                    for (int i = arrivingStart[r]; i < arrivingStart[r + 1]; i++) {
+                        int id = arriving[i];
+                        cell[id] = proposed[id];
+                        occupancy.attach(entity[id], cell[id]);
+                        keys ^= ZobristHash.key(grid.getX(cell[id]), grid.getY(cell[id]), ZobristHash.entity(OccupancyIndex.EVIL, id));
+                    }
+                }
+                regionKeys[r] ^= keys;
+            }
+        }
+    }
+
+    /**
+     * Works out which exits of a room enemies may take: the open ones not leading into the boundary ring.
+     * @param room The packed index of the room.
+     */
+    private void updateOpen(int room)
+    {
+        int mask = 0;
+        for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1)
+            if (grid.hasExit(room, direction) && !grid.isBoundary(grid.neighbor(room, direction)))
+                mask |= direction;
+        open[room] = (byte) mask;
+    }
+}
\ No newline at end of file
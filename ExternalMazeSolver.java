@@ -0,0 +1,503 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Breadth-first search for mazes too large for the heap, usually a MappedMazeGrid opened
+ * from a binary maze file (see MazeBinaryFile). It finds the same shortest paths as
+ * MazeSolver.solveBFS and the same distances as DistanceField, keeping almost nothing in memory.
+ *
+ * The search goes one layer of rooms at a time. Every layer is appended to a spill file,
+ * after the layer before it, and read back sequentially while the next one is written,
+ * through two large direct buffers; the offset where each layer ends goes to a second spill file.
+ * Rooms are marked as visited in a bitset kept in a third file and mapped in segments of 64 MB,
+ * one bit per cell, which the operating system pages in and out as needed.
+ * A shortest path is then found backwards from the goal, one layer at a time: the room before
+ * a room of layer d is the one of its neighbors with a passage into it that is in layer d - 1.
+ *
+ * The memory budget bounds the direct buffers, which are the only large allocations. The mapped
+ * bitset and the mapped output of writeDistanceField live in the page cache, not in the budget,
+ * and the path returned by findPath is an ordinary array, as long as the path.
+ *
+ * Passages are followed like MazeSolver does: from the side of the room being left,
+ * and into the boundary ring only if it is the goal, like the exit room.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class ExternalMazeSolver implements Closeable
+{
+    public static final int UNREACHABLE = -1;
+
+    private static final int SEGMENT_SHIFT = 26; // log2 of the size of a mapped segment
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int OFFSET_BUFFER = 1 << 13; // size of the buffer of layer offsets
+    private static final int MIN_BUFFER = 1 << 12; // smallest frontier buffer
+    private static final int MAX_BUFFER = 1 << 30; // largest frontier buffer
+
+    private MazeGrid grid; // the maze being searched
+    private long budget; // bytes of buffers allowed
+    private Path layerPath, offsetPath, visitedPath;
+    private FileChannel layers; // every layer of the last search, one after the other
+    private FileChannel offsets; // byte offset in layers where each layer ends
+    private Mapped visited; // one bit per cell, set once the cell has been reached
+    private ByteBuffer readBuffer; // the layer being expanded
+    private ByteBuffer writeBuffer; // the layer being found
+    private ByteBuffer offsetBuffer; // layer offsets waiting to be written, or read back
+    private long written; // bytes of layers written so far, counting the ones still in writeBuffer
+    private int offsetCount; // layers whose offsets have been written
+    private int offsetFirst; // first layer whose offset is in offsetBuffer when reading back, -1 if none
+    private long layerSize; // bytes of the layer being found
+    private long nodesExpanded; // rooms expanded by the last search
+
+    /**
+     * Constructor for objects of class ExternalMazeSolver, creating its spill files.
+     * @param grid The grid holding the walls of the maze.
+     * @param directory The directory where the spill files are kept, deleted by close.
+     * @param memoryBudget The number of bytes the buffers may take, at least 24 KB.
+     * @throws IOException If the spill files cannot be created.
+     */
+    public ExternalMazeSolver(MazeGrid grid, String directory, long memoryBudget) throws IOException
+    {
+        long frontier = Math.min((memoryBudget - OFFSET_BUFFER) / 2, MAX_BUFFER) & ~7L;
+        if (frontier < MIN_BUFFER)
+            throw new IllegalArgumentException("Memory budget too small: " + memoryBudget + " bytes");
+
+        this.grid = grid;
+        budget = memoryBudget;
+        readBuffer = ByteBuffer.allocateDirect((int) frontier);
+        writeBuffer = ByteBuffer.allocateDirect((int) frontier);
+        offsetBuffer = ByteBuffer.allocateDirect(OFFSET_BUFFER);
+
+        Path dir = Paths.get(directory);
+        layerPath = Files.createTempFile(dir, "maze-bfs", ".layers");
+        offsetPath = Files.createTempFile(dir, "maze-bfs", ".offsets");
+        visitedPath = Files.createTempFile(dir, "maze-bfs", ".visited");
+        layers = FileChannel.open(layerPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        offsets = FileChannel.open(offsetPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        visited = new Mapped(visitedPath, ((long) grid.getLength() + 7) >>> 3);
+    }
+
+    /**
+     * Breadth-first search for a shortest path.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The rooms of the path from start to goal, or null if the goal cannot be reached.
+     * @throws IOException If the spill files cannot be read or written.
+     */
+    public int[] findPath(int start, int goal) throws IOException
+    {
+        int steps = search(start, goal, false, null);
+        if (steps == UNREACHABLE)
+            return null;
+
+        int[] path = new int[steps + 1];
+        int[] before = new int[4];
+        path[steps] = goal;
+
+        for (int d = steps - 1; d >= 0; d--) {
+            // the rooms with a passage into the next room of the path, one of them is in layer d
+            int cell = path[d + 1];
+            int count = 0;
+            for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1) {
+                int previous = grid.neighbor(cell, direction);
+                if (previous >= 0 && previous < grid.getLength() && !grid.isBoundary(previous)
+                    && grid.hasExit(previous, MazeGrid.opposite(direction)))
+                    before[count++] = previous;
+            }
+            path[d] = find(layerEnd(d - 1), layerEnd(d), before, count);
+        }
+        return path;
+    }
+
+    /**
+     * Breadth-first search for the length of a shortest path, without finding the path.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The number of steps from start to goal, or UNREACHABLE.
+     * @throws IOException If the spill files cannot be read or written.
+     */
+    public int distance(int start, int goal) throws IOException
+    {
+        return search(start, goal, false, null);
+    }
+
+    /**
+     * Measures the distance from every room to one source room, like DistanceField, and writes
+     * it to a file: one big-endian int for every room in row order, UNREACHABLE if there is no way.
+     * @param x The row of the source room.
+     * @param y The column of the source room.
+     * @param filename The name of the file.
+     * @return The number of rooms that can reach the source, the source included.
+     * @throws IOException If the file or the spill files cannot be written.
+     */
+    public long writeDistanceField(int x, int y, String filename) throws IOException
+    {
+        long rooms = (long) grid.getRows() * grid.getCols();
+        Path path = Paths.get(filename);
+
+        // every room starts unreachable, written sequentially through the write buffer
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeBuffer.clear();
+            for (long room = 0; room < rooms; room++) {
+                if (!writeBuffer.hasRemaining())
+                    drain(out, writeBuffer);
+                writeBuffer.putInt(UNREACHABLE);
+            }
+            drain(out, writeBuffer);
+        }
+
+        Mapped field = new Mapped(path, rooms * 4);
+        try {
+            search(grid.index(x, y), -1, true, field);
+            field.force();
+        }
+        finally {
+            field.close();
+        }
+        return nodesExpanded;
+    }
+
+    /**
+     * @return The number of rooms expanded by the last search.
+     */
+    public long getNodesExpanded() {return nodesExpanded;}
+
+    /**
+     * @return The number of bytes the buffers may take.
+     */
+    public long getMemoryBudget() {return budget;}
+
+    /**
+     * @return grid The grid holding the walls of the maze.
+     */
+    public MazeGrid getGrid() {return grid;}
+
+    /**
+     * Closes and deletes the spill files.
+     * @throws IOException If the files cannot be closed or deleted.
+     */
+    public void close() throws IOException
+    {
+        try {
+            layers.close();
+            offsets.close();
+            visited.close();
+        }
+        finally {
+            Files.deleteIfExists(layerPath);
+            Files.deleteIfExists(offsetPath);
+            Files.deleteIfExists(visitedPath);
+        }
+    }
+
+    /**
+     * Breadth-first search, one layer at a time, keeping every layer in the spill file.
+     * @param source The packed index of the first room.
+     * @param goal The packed index of the room to reach, or -1 to reach every room.
+     * @param reverse True to go through the exits of the rooms being entered instead of left,
+     *                which measures the distances to the source rather than from it.
+     * @param field Where to write the distance of every room reached, or null.
+     * @return The number of steps to the goal, or UNREACHABLE.
+     * @throws IOException If the spill files cannot be read or written.
+     */
+    private int search(int source, int goal, boolean reverse, Mapped field) throws IOException
+    {
+        visited.zero();
+        layers.truncate(0);
+        offsets.truncate(0);
+        writeBuffer.clear();
+        offsetBuffer.clear();
+        written = 0;
+        offsetCount = 0;
+        offsetFirst = -1;
+        layerSize = 0;
+        nodesExpanded = 0;
+
+        int steps = layers(source, goal, reverse, field);
+        drain(offsets, offsetBuffer);
+        return steps;
+    }
+
+    /**
+     * Finds the layers of the search, one after the other.
+     * @param source The packed index of the first room.
+     * @param goal The packed index of the room to reach, or -1 to reach every room.
+     * @param reverse True to go through the exits of the rooms being entered.
+     * @param field Where to write the distance of every room reached, or null.
+     * @return The number of steps to the goal, or UNREACHABLE.
+     * @throws IOException If the spill files cannot be read or written.
+     */
+    private int layers(int source, int goal, boolean reverse, Mapped field) throws IOException
+    {
+        visit(source, 0, field);
+        endLayer();
+        if (source == goal)
+            return 0;
+
+        for (int depth = 0; ; depth++) {
+            // layer depth is complete in the spill file; the next one is appended after it
+            long from = written - layerSize;
+            long to = written;
+            layerSize = 0;
+
+            for (long position = from; position < to; ) {
+                position += fill(position, to);
+                while (readBuffer.hasRemaining()) {
+                    int cell = readBuffer.getInt();
+                    nodesExpanded++;
+
+                    for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1) {
+                        int next = grid.neighbor(cell, direction);
+                        boolean open = reverse ? grid.hasExit(next, MazeGrid.opposite(direction)) : grid.hasExit(cell, direction);
+                        if (!open || (next != goal && grid.isBoundary(next)) || visited.getBit(next))
+                            continue;
+
+                        visit(next, depth + 1, field);
+                        if (next == goal) {
+                            endLayer();
+                            return depth + 1;
+                        }
+                    }
+                }
+            }
+
+            endLayer();
+            if (layerSize == 0)
+                return UNREACHABLE; // nothing new was found
+        }
+    }
+
+    /**
+     * Marks a cell as reached and appends it to the layer being found.
+     * @param cell The packed index of the cell.
+     * @param depth The number of the layer, the distance of the cell.
+     * @param field Where to write the distance, or null.
+     * @throws IOException If the layer spill file cannot be written.
+     */
+    private void visit(int cell, int depth, Mapped field) throws IOException
+    {
+        visited.setBit(cell);
+        if (field != null && !grid.isBoundary(cell))
+            field.putInt(4 * ((long) (grid.getX(cell) - 1) * grid.getCols() + grid.getY(cell) - 1), depth);
+
+        if (!writeBuffer.hasRemaining())
+            drain(layers, writeBuffer);
+        writeBuffer.putInt(cell);
+        written += 4;
+        layerSize += 4;
+    }
+
+    /**
+     * Finishes the layer being found: writes it out and records where it ends.
+     * @throws IOException If the spill files cannot be written.
+     */
+    private void endLayer() throws IOException
+    {
+        drain(layers, writeBuffer);
+        if (!offsetBuffer.hasRemaining())
+            drain(offsets, offsetBuffer);
+        offsetBuffer.putLong(written);
+        offsetCount++;
+    }
+
+    /**
+     * Reads the next part of a layer into the read buffer.
+     * @param position The offset to read from.
+     * @param end The offset where the layer ends.
+     * @return The number of bytes read.
+     * @throws IOException If the spill file cannot be read.
+     */
+    private int fill(long position, long end) throws IOException
+    {
+        readBuffer.clear();
+        readBuffer.limit((int) Math.min(readBuffer.capacity(), end - position));
+        while (readBuffer.hasRemaining())
+            if (layers.read(readBuffer, position + readBuffer.position()) < 0)
+                throw new IOException("Layer spill file ends early");
+        readBuffer.flip();
+        return readBuffer.limit();
+    }
+
+    /**
+     * Scans a layer for any of a few rooms.
+     * @param from The offset where the layer starts.
+     * @param to The offset where the layer ends.
+     * @param rooms The rooms looked for.
+     * @param count The number of rooms looked for.
+     * @return The first of the rooms found in the layer.
+     * @throws IOException If the spill file cannot be read or none of the rooms is in the layer.
+     */
+    private int find(long from, long to, int[] rooms, int count) throws IOException
+    {
+        for (long position = from; position < to; ) {
+            position += fill(position, to);
+            while (readBuffer.hasRemaining()) {
+                int cell = readBuffer.getInt();
+                for (int i = 0; i < count; i++)
+                    if (rooms[i] == cell)
+                        return cell;
+            }
+        }
+        throw new IOException("Layer spill file does not match the maze");
+    }
+
+    /**
+     * Reads back where a layer ends, which is where the next one starts.
+     * Offsets are read in blocks ending at the layer asked for, since the path is traced backwards.
+     * @param layer The number of the layer, -1 for the start of layer 0.
+     * @return The offset in the layer spill file.
+     * @throws IOException If the spill file cannot be read.
+     */
+    private long layerEnd(int layer) throws IOException
+    {
+        if (layer < 0)
+            return 0;
+
+        int capacity = OFFSET_BUFFER / 8;
+        if (offsetFirst < 0 || layer < offsetFirst || layer >= offsetFirst + capacity) {
+            offsetFirst = Math.max(0, layer - capacity + 1);
+            offsetBuffer.clear();
+            offsetBuffer.limit(Math.min(capacity, offsetCount - offsetFirst) * 8);
+            while (offsetBuffer.hasRemaining())
+                if (offsets.read(offsetBuffer, (long) offsetFirst * 8 + offsetBuffer.position()) < 0)
+                    throw new IOException("Offset spill file ends early");
+        }
+        return offsetBuffer.getLong((layer - offsetFirst) * 8);
+    }
+
+    /**
+     * Writes out everything in a buffer, at the end of the file.
+     * @param channel The file.
+     * @param buffer The buffer, ready to be filled again afterwards.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer, channel.size());
+        buffer.clear();
+    }
+
+    /**
+     * A file mapped in segments of 64 MB, each one the first time a byte inside it is touched,
+     * like MappedMazeGrid.
+     */
+    private static class Mapped
+    {
+        private FileChannel channel;
+        private long size; // number of bytes of the file
+        private MappedByteBuffer[] segments; // mapped parts of the file, null until first touched
+
+        /**
+         * Opens a file for mapping, making it the given size.
+         * @param path The file.
+         * @param size The number of bytes.
+         * @throws IOException If the file cannot be opened.
+         */
+        Mapped(Path path, long size) throws IOException
+        {
+            this.size = size;
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < size)
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        }
+
+        /**
+         * @param bit The number of a bit.
+         * @return True if the bit is set.
+         */
+        boolean getBit(long bit)
+        {
+            long offset = bit >>> 3;
+            return (segment(offset).get((int) (offset & SEGMENT_MASK)) & (1 << (bit & 7))) != 0;
+        }
+
+        /**
+         * @param bit The number of the bit to set.
+         */
+        void setBit(long bit)
+        {
+            long offset = bit >>> 3;
+            MappedByteBuffer segment = segment(offset);
+            int index = (int) (offset & SEGMENT_MASK);
+            segment.put(index, (byte) (segment.get(index) | (1 << (bit & 7))));
+        }
+
+        /**
+         * @param offset The byte offset of the int, a multiple of 4.
+         * @param value The int to write there.
+         */
+        void putInt(long offset, int value)
+        {
+            segment(offset).putInt((int) (offset & SEGMENT_MASK), value);
+        }
+
+        /**
+         * Writes zeros over the segments mapped so far; the others have never been written.
+         */
+        void zero()
+        {
+            for (int s = 0; s < segments.length; s++) {
+                MappedByteBuffer segment = segments[s];
+                if (segment == null)
+                    continue;
+                int i = 0;
+                for (; i + 8 <= segment.limit(); i += 8)
+                    segment.putLong(i, 0);
+                for (; i < segment.limit(); i++)
+                    segment.put(i, (byte) 0);
+            }
+        }
+
+        /**
+         * Writes any changes back to the file.
+         */
+        void force()
+        {
+            for (MappedByteBuffer segment : segments)
+                if (segment != null)
+                    segment.force();
+        }
+
+        /**
+         * Closes the file. The segments already mapped stay until they are garbage collected.
+         * @throws IOException If the file cannot be closed.
+         */
+        void close() throws IOException
+        {
+            channel.close();
+        }
+
+        /**
+         * @param offset A byte offset into the file.
+         * @return The mapped segment holding that byte, mapping it first if needed.
+         * @throws UncheckedIOException If the file cannot be mapped.
+         */
+        private MappedByteBuffer segment(long offset)
+        {
+            int s = (int) (offset >>> SEGMENT_SHIFT);
+            MappedByteBuffer segment = segments[s];
+            if (segment == null) {
+                long start = (long) s << SEGMENT_SHIFT;
+                try {
+                    segment = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(SEGMENT_MASK + 1, size - start));
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                segments[s] = segment;
+            }
+            return segment;
+        }
+    }
+}
\ No newline at end of file
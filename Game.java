@@ -1,4 +1,6 @@
 import javax.swing.JOptionPane;
+import java.awt.Image;
+import java.util.SplittableRandom;
 import javax.sound.sampled.AudioInputStream; // https://docs.oracle.com/javase/7/docs/api/javax/sound/sampled/Clip.html, accessed on 08/31/2016.
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
@@ -15,31 +17,81 @@ public class Game
     private Canvas canvas;
     private int x, x2;
     private int y, y2;
-    private int[] ex; // stores the locations of the evil circles
-    private int[] ey;
+    private EnemySystem evils; // the evil circles
+    private DistanceField[] pursuit; // the ways to each player, followed by the evil circles
+    static final int DOTS = 100; // dots scattered in a one player game
+    static final int EVIL_CIRCLES = 3;
+    static final int POWER_UPS = 6; // two of each kind
+    static final int ITEMS = DOTS + EVIL_CIRCLES + POWER_UPS; // everything placed in the maze, in the order it is placed
+
     private int[] powerUpX; // stores the locations of the power-ups
     private int[] powerUpY;
     private Maze maze;
     private Renderer renderer;
-    private boolean usedSpace, dots[][], allDotsConsumed;
+    private GameRandom random; // per-game random streams, all derived from the game seed
+    private boolean usedSpace, allDotsConsumed;
     private int speed;
     String filename;
     MP3 mp3;
     private long activatedAt;
     private int players;
     private String godMode = "";
-    int[][] mazeSolver;
-    int speedSolver = 15;    // short delay between solver steps
+    int solverFrameRate = 60; // frames per second of the solver playback
+    int solverMovesPerFrame = 1; // solver moves drawn in each frame
+    double evilChase = 0.05; // difficulty: chance that an evil circle steps towards the player instead of at random
+    int evilHorizon = 4; // ticks the evil circles plan ahead to keep out of each other's way, 0 to let them pile up
 
     /**
-     * Constructor for objects of class Game
+     * Constructor for objects of class Game, with a fresh random seed.
      */
     public Game()
+    {
+        this(new GameRandom().getSeed());
+    }
+
+    /**
+     * Constructor for objects of class Game.
+     * The same seed always gives the same maze, placements and evil circle walks.
+     * @param seed The seed of the game.
+     */
+    public Game(long seed)
+    {
+        this(seed, null);
+    }
+
+    /**
+     * Constructor for objects of class Game, playing in a stored maze.
+     * @param seed The seed of the game, used for everything but the maze.
+     * @param maze The maze to play in (at least 3 x 3), or null to generate one from the seed.
+     */
+    public Game(long seed, Maze maze)
+    {
+        this(seed, maze, null);
+    }
+
+    /**
+     * Constructor for objects of class Game, starting at once with a maze prepared by a MazePool.
+     * @param prepared A maze generated and rendered in the background.
+     */
+    public Game(MazePool.Prepared prepared)
+    {
+        this(prepared.getSeed(), prepared.getMaze(), prepared.getImage());
+    }
+
+    /**
+     * Constructor for objects of class Game.
+     * @param seed The seed of the game, used for everything but the maze.
+     * @param maze The maze to play in (at least 3 x 3), or null to generate one from the seed.
+     * @param background The maze already rendered by Renderer.rasterizeMaze, or null to render it now.
+     */
+    private Game(long seed, Maze maze, Image background)
     {
 
         // initialise instance variables 
         canvas = Canvas.getCanvas();
-        maze = new Maze(25);
+        canvas.clear(); // remove what is left of an earlier game
+        random = new GameRandom(seed);
+        this.maze = maze != null ? maze : new Maze(25, random.getMazeRandom());
 
         // start the game at 1, 1 (top left)
         x = 1;
@@ -47,9 +99,15 @@ public class Game
         x2 = 1;
         y2 = 1;
 
-        maze.getRoom(x, y).setPersonInRoom(1, true);
-        renderer = new Renderer(27); // maze size with +2 for borders
-        renderer.renderMaze(maze);
+        this.maze.getRoom(x, y).setPersonInRoom(1, true);
+        renderer = new Renderer(this.maze.getSize() + 2, random.getRenderRandom()); // maze size with +2 for borders
+        if (background != null) {
+            canvas.setBackgroundImage(background);
+            renderer.renderRoom(this.maze.getRoom(x, y)); // only the player is missing from the image
+        }
+        else {
+            renderer.renderMaze(this.maze);
+        }
 
         players = 0;
 
@@ -72,6 +130,7 @@ public class Game
      * 3- redraw 
      * 4- wait for next move
      * 5- check for winning condition
+     * Returns when the game is over, so that another one can be started.
      */
     public void interact()
     {
@@ -79,19 +138,24 @@ public class Game
 
         if (players == 1){
 
+            int[] itemX = new int[ITEMS], itemY = new int[ITEMS];
+            placeItems(random.getPlacementRandom(), maze.getSize(), itemX, itemY);
+
             // create 100 random dots
-            dots = new boolean[100][100];
-            for (int k = 0; k < 100; k++) {
-                int r = Maze.randomNum(24);
-                int r2 = Maze.randomNum(24);
-                // there is a dot in the room at row r, column r2
-                dots[r+1][r2+1] = true;
-                renderer.renderDots(maze.getRoom(r+1,r2+1));
+            OccupancyIndex occupancy = maze.getOccupancy();
+            MazeGrid grid = maze.getGrid();
+            for (int k = 0; k < DOTS; k++) {
+                // there is a dot in the room at row itemX[k], column itemY[k]
+                if (!occupancy.has(OccupancyIndex.DOT, grid.index(itemX[k], itemY[k]))) {
+                    occupancy.add(OccupancyIndex.DOT, 0, grid.index(itemX[k], itemY[k]));
+                    maze.toggleFeature(itemX[k], itemY[k], ZobristHash.entity(OccupancyIndex.DOT, 0));
+                }
+                renderer.renderDots(maze.getRoom(itemX[k], itemY[k]));
             }
 
-            createEvilCircles(3);
+            createEvilCircles(itemX, itemY, DOTS);
 
-            createPowerUps();
+            createPowerUps(itemX, itemY, DOTS + EVIL_CIRCLES);
 
             renderer.refresh();
 
@@ -113,95 +177,49 @@ public class Game
 
                     JOptionPane.showMessageDialog(null, "Now watch me try!", "AI Player", JOptionPane.PLAIN_MESSAGE);
 
-                    initializeMazeSolver();
-                    solveMaze(1,1);
-
-                    System.exit(0);
+                    replaySolution();
+                    return;
                 }
-                else {dots[maze.getRoom(x, y).getX()][maze.getRoom(x, y).getY()] = false;
-                    // get current room, get its location on the maze (x,y) and assign false to the
-                    // respective Dots in that room (they have been consumed, since the player is here now)
+                else {
+                    // the dot in the current room, if any, has been consumed, since the player is here now
+                    int dot = occupancy.find(OccupancyIndex.DOT, 0, grid.index(x, y));
+                    if (dot != OccupancyIndex.NONE) {
+                        occupancy.remove(dot);
+                        maze.toggleFeature(x, y, ZobristHash.entity(OccupancyIndex.DOT, 0));
+                    }
 
-                    detectLoss();
+                    if (detectLoss()) return;
 
                     if (speed == 1)
                         moveEvils();
                     else if (speed == 2)
                     {
-                        int random1 = Maze.randomNum(2);
+                        int random1 = random.getEvilRandom().nextInt(2);
                         if (random1 == 0) moveEvils();
                     }
                     else if (speed == 4)
                     {
-                        int random1 = Maze.randomNum(4);
+                        int random1 = random.getEvilRandom().nextInt(4);
                         if (random1 == 0 || random1 == 1) moveEvils();
                     }
                     else moveEvils();
 
-                    detectLoss();
-
-                    if (maze.getRoom(x,y).isKillEvilCircleInRoom(1) && maze.getRoom(ex[0], ey[0]).isEvilInRoom(1)) // if the player reaches the green power-up and Evil 1 is still alive 
-                    {
-                        maze.getRoom(x,y).setKillEvilCircleInRoom(1, false);
-                        maze.getRoom(ex[0],ey[0]).setEvilInRoom(1, false);
-                        JOptionPane.showMessageDialog(null, "Evil 1 has been killed!\nGoodbye Evil 1...", "POWER-UP!", JOptionPane.PLAIN_MESSAGE);
-                        renderer.renderRoom(maze.getRoom(ex[0],ey[0])); // redraw Evil 1's old room without it
-                    }
-
-                    if (maze.getRoom(x,y).isKillEvilCircleInRoom(2) && maze.getRoom(ex[1], ey[1]).isEvilInRoom(2))
-                    {
-                        maze.getRoom(x,y).setKillEvilCircleInRoom(2, false);
-                        maze.getRoom(ex[1],ey[1]).setEvilInRoom(2, false);
-                        JOptionPane.showMessageDialog(null, "Evil 2 has been killed!\nGoodbye Evil 2...", "POWER-UP!", JOptionPane.PLAIN_MESSAGE);
-                        renderer.renderRoom(maze.getRoom(ex[1],ey[1]));
-                    }
-
-                    if (maze.getRoom(x,y).isInvincibilityInRoom(1) || maze.getRoom(x,y).isInvincibilityInRoom(2)) // if the player reaches one of the blue power-ups
-                    {
-                        invActivate();
-
-                        if (maze.getRoom(x,y).isInvincibilityInRoom(1))                        
-                            maze.getRoom(x,y).setInvincibilityInRoom(1, false);
-                        else
-                            maze.getRoom(x,y).setInvincibilityInRoom(2, false);
-
-                        JOptionPane.showMessageDialog(null, "You are now invincible for 1 minute!", "POWER-UP!", JOptionPane.PLAIN_MESSAGE);
-                    }
-
-                    if (maze.getRoom(x,y).isDoubleSpeedInRoom(1) || maze.getRoom(x,y).isDoubleSpeedInRoom(2)) // if the player reaches one of the red power-ups
-                    {
-                        speed *= 2;
+                    if (detectLoss()) return;
 
-                        if (maze.getRoom(x,y).isDoubleSpeedInRoom(1))
-                            maze.getRoom(x,y).setDoubleSpeedInRoom(1, false);
-                        else 
-                            maze.getRoom(x,y).setDoubleSpeedInRoom(2, false);
-
-                        JOptionPane.showMessageDialog(null, "You are now twice as fast!", "POWER-UP!", JOptionPane.PLAIN_MESSAGE);
-                    }                   
+                    pickUpPowerUps();
                 }
 
-                allDotsConsumed = true;
-
                 // if there is even 1 dot that has not yet been consumed and is still there
                 // then that means that not all dots have been consumed
-                for (int i = 0; i < 100; i++)
-                {
-                    for (int j = 0; j < 100; j++)
-                    {
-                        if (dots[i][j] == true)
-                        {
-                            allDotsConsumed = false;
-                        }
-                    }
-                }
+                allDotsConsumed = occupancy.getCount(OccupancyIndex.DOT) == 0;
 
                 // if all 100 dots have been consumed, display a congratulatory message and exit the game
                 if (allDotsConsumed == true)
                 {
                     playSoundEffect("win");
                     JOptionPane.showMessageDialog(null, "Congratulations!\nYou got all the dots!\n\nYou win!", "WIN WITH DOTS", JOptionPane.PLAIN_MESSAGE);
-                    System.exit(0);
+                    mp3.close();
+                    return;
                 }
 
                 if (godMode.toUpperCase().contains("FILIP"))
@@ -247,7 +265,8 @@ public class Game
 
                     JOptionPane.showMessageDialog(null, "Congratulations Player 1 (Blue)! You win!", "PlAYER 1 WIN", JOptionPane.PLAIN_MESSAGE);
                     JOptionPane.showMessageDialog(null, "Sorry Player 2 (Green)! Better luck next time...", "PlAYER 1 WIN", JOptionPane.PLAIN_MESSAGE);
-                    System.exit(0);
+                    mp3.close();
+                    return;
                 }
                 else if (exit2) //exit room
                 {
@@ -255,7 +274,8 @@ public class Game
 
                     JOptionPane.showMessageDialog(null, "Congratulations Player 2 (Green)! You win!", "PlAYER 2 WIN", JOptionPane.PLAIN_MESSAGE);
                     JOptionPane.showMessageDialog(null, "Sorry Player 1 (Blue)! Better luck next time...!", "PlAYER 2 WIN", JOptionPane.PLAIN_MESSAGE);
-                    System.exit(0);
+                    mp3.close();
+                    return;
                 }
 
                 // determines the speed of the game
@@ -321,6 +341,9 @@ public class Game
             exit = r2.getExitRoom();
         }
 
+        if (!exit && (x != r.getX() || y != r.getY()))
+            followPlayer(0, x, y);
+
         // refresh after moving the person
         renderer.refresh();       
         return exit;
@@ -379,191 +402,94 @@ public class Game
             exit2 = r4.getExitRoom();
         }
 
+        if (!exit2 && (x2 != r3.getX() || y2 != r3.getY()))
+            followPlayer(1, x2, y2);
+
         renderer.refresh();       
         return exit2;
     }
 
     /**
-     * Moves each one of the 3 evil circles randomly.
+     * Moves the way to a player chased by the evil circles to the room the player has just entered.
+     * This is the only time the way is searched again, however many evil circles follow it.
+     * @param player The player, 0 for Player 1 and 1 for Player 2.
+     * @param x The row of the new room of the player.
+     * @param y The column of the new room of the player.
      */
-    public void moveEvils()
-    {   boolean[] evilsMoved = {false, false, false};
+    private void followPlayer(int player, int x, int y)
+    {
+        if (pursuit != null && player < pursuit.length)
+            pursuit[player].setSource(x, y);
+    }
 
-        while (!evilsMoved[0] && maze.getRoom(ex[0], ey[0]).isEvilInRoom(1))
-        {   int randomNum = Maze.randomNum(4);
-            Room e = maze.getRoom(ex[0], ey[0]);
+    /**
+     * Moves each one of the evil circles, at random or towards the player, keeping out of each other's way
+     * (see EnemySystem.setCooperation), then redraws the rooms they left and entered.
+     */
+    public void moveEvils()
+    {
+        evils.tick(random.getEvilRandom().nextLong());
 
-            if (randomNum == 0) // move evil 1 north
-            {
-                if (e.getNorthExit() != null)
-                {
-                    Room ee = e.getNorthExit();
-                    e.setEvilInRoom(1, false);
-                    ee.setEvilInRoom(1, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[0] = ee.getX(); ey[0] = ee.getY();
-                    evilsMoved[0] = true;
-                }
-            }
-            else if (randomNum == 1)
-            {
-                if (e.getEastExit() != null && e.getEastExit().getExitRoom() == false)
-                {
-                    Room ee = e.getEastExit();
-                    e.setEvilInRoom(1, false);
-                    ee.setEvilInRoom(1, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[0] = ee.getX(); ey[0] = ee.getY();
-                    evilsMoved[0] = true;
-                }
-            }
-            else if (randomNum == 2)
-            {
-                if (e.getSouthExit() != null)
-                {
-                    Room ee = e.getSouthExit();
-                    e.setEvilInRoom(1, false);
-                    ee.setEvilInRoom(1, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[0] = ee.getX(); ey[0] = ee.getY();
-                    evilsMoved[0] = true;
-                }
-            }
-            else if (randomNum == 3)
-            {
-                if (e.getWestExit() != null)
-                {
-                    Room ee = e.getWestExit();
-                    e.setEvilInRoom(1, false);
-                    ee.setEvilInRoom(1, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[0] = ee.getX(); ey[0] = ee.getY();
-                    evilsMoved[0] = true;
-                }
+        for (int i = 0; i < evils.getCount(); i++) {
+            if (evils.isAlive(i) && evils.getCell(i) != evils.getPreviousCell(i)) {
+                renderEvilRoom(evils.getPreviousCell(i));
+                renderEvilRoom(evils.getCell(i));
             }
         }
 
-        while (!evilsMoved[1] && maze.getRoom(ex[1], ey[1]).isEvilInRoom(2))
-        {   int randomNum = Maze.randomNum(4);
-            Room e = maze.getRoom(ex[1], ey[1]);
-
-            if (randomNum == 0)
-            {
-                if (e.getNorthExit() != null)
-                {
-                    Room ee = e.getNorthExit();
-                    e.setEvilInRoom(2, false);
-                    ee.setEvilInRoom(2, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[1] = ee.getX(); ey[1] = ee.getY();
-                    evilsMoved[1] = true;
-                }
-            }
-            else if (randomNum == 1)
-            {
-                if (e.getEastExit() != null && e.getEastExit().getExitRoom() == false)
-                {
-                    Room ee = e.getEastExit();
-                    e.setEvilInRoom(2, false);
-                    ee.setEvilInRoom(2, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[1] = ee.getX(); ey[1] = ee.getY();
-                    evilsMoved[1] = true;
-                }
-            }
-            else if (randomNum == 2)
-            {
-                if (e.getSouthExit() != null)
-                {
-                    Room ee = e.getSouthExit();
-                    e.setEvilInRoom(2, false);
-                    ee.setEvilInRoom(2, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[1] = ee.getX(); ey[1] = ee.getY();
-                    evilsMoved[1] = true;
-                }
-            }
-            else if (randomNum == 3)
-            {
-                if (e.getWestExit() != null)
-                {
-                    Room ee = e.getWestExit();
-                    e.setEvilInRoom(2, false);
-                    ee.setEvilInRoom(2, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[1] = ee.getX(); ey[1] = ee.getY();
-                    evilsMoved[1] = true;
-                }
-            }
-        }
+        renderer.refresh();
+    }
 
-        while (!evilsMoved[2])
-        {   int randomNum = Maze.randomNum(4);
-            Room e = maze.getRoom(ex[2],ey[2]);
+    /**
+     * Redraws a room an evil circle is in or has just left.
+     * @param cell The packed index of the room.
+     */
+    private void renderEvilRoom(int cell)
+    {
+        MazeGrid grid = maze.getGrid();
+        renderer.renderRoom(maze.getRoom(grid.getX(cell), grid.getY(cell)));
+    }
 
-            if (randomNum == 0)
-            {
-                if (e.getNorthExit() != null)
+    /**
+     * Gives the player the power-ups in the room the player is in. The rooms where a player and a power-up meet
+     * are found by intersecting their bitsets in the occupancy index of the maze, and every power-up there is used,
+     * however many there are and whatever their numbers.
+     * A power-up that kills an evil circle that is already dead stays where it is.
+     */
+    private void pickUpPowerUps()
+    {
+        OccupancyIndex occupancy = maze.getOccupancy();
+        MazeGrid grid = maze.getGrid();
+        long powerUps = 1L << OccupancyIndex.KILL_EVIL | 1L << OccupancyIndex.INVINCIBILITY | 1L << OccupancyIndex.DOUBLE_SPEED;
+
+        for (int cell = occupancy.nextOverlap(OccupancyIndex.PLAYER, powerUps, 0); cell != OccupancyIndex.NONE;
+             cell = occupancy.nextOverlap(OccupancyIndex.PLAYER, powerUps, cell + 1)) {
+            Room r = maze.getRoom(grid.getX(cell), grid.getY(cell));
+            for (int id = occupancy.getFirst(cell), next; id != OccupancyIndex.NONE; id = next) {
+                next = occupancy.getNext(id); // the power-up may be removed below
+                int i = occupancy.getTag(id);
+
+                if (occupancy.getKind(id) == OccupancyIndex.KILL_EVIL && i <= evils.getCount() && evils.isAlive(i - 1)) // the green power-up i kills Evil i
                 {
-                    Room ee = e.getNorthExit();
-                    e.setEvilInRoom(3, false);
-                    ee.setEvilInRoom(3, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[2] = ee.getX(); ey[2] = ee.getY();
-                    evilsMoved[2] = true;
+                    r.setKillEvilCircleInRoom(i, false);
+                    evils.kill(i - 1);
+                    JOptionPane.showMessageDialog(null, "Evil " + i + " has been killed!\nGoodbye Evil " + i + "...", "POWER-UP!", JOptionPane.PLAIN_MESSAGE);
+                    renderEvilRoom(evils.getCell(i - 1)); // redraw the evil circle's old room without it
                 }
-            }
-            else if (randomNum == 1)
-            {
-                if (e.getEastExit() != null && e.getEastExit().getExitRoom() == false)
+                else if (occupancy.getKind(id) == OccupancyIndex.INVINCIBILITY) // the blue power-ups
                 {
-                    Room ee = e.getEastExit();
-                    e.setEvilInRoom(3, false);
-                    ee.setEvilInRoom(3, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[2] = ee.getX(); ey[2] = ee.getY();
-                    evilsMoved[2] = true;
+                    invActivate();
+                    r.setInvincibilityInRoom(i, false);
+                    JOptionPane.showMessageDialog(null, "You are now invincible for 1 minute!", "POWER-UP!", JOptionPane.PLAIN_MESSAGE);
                 }
-            }
-            else if (randomNum == 2)
-            {
-                if (e.getSouthExit() != null)
+                else if (occupancy.getKind(id) == OccupancyIndex.DOUBLE_SPEED) // the red power-ups
                 {
-                    Room ee = e.getSouthExit();
-                    e.setEvilInRoom(3, false);
-                    ee.setEvilInRoom(3, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[2] = ee.getX(); ey[2] = ee.getY();
-                    evilsMoved[2] = true;
-                }
-            }
-            else if (randomNum == 3)
-            {
-                if (e.getWestExit() != null)
-                {
-                    Room ee = e.getWestExit();
-                    e.setEvilInRoom(3, false);
-                    ee.setEvilInRoom(3, true);
-                    renderer.renderRoom(e);
-                    renderer.renderRoom(ee);
-                    ex[2] = ee.getX(); ey[2] = ee.getY();
-                    evilsMoved[2] = true;
+                    speed *= 2;
+                    r.setDoubleSpeedInRoom(i, false);
+                    JOptionPane.showMessageDialog(null, "You are now twice as fast!", "POWER-UP!", JOptionPane.PLAIN_MESSAGE);
                 }
             }
         }
-
-        renderer.refresh();
     }
 
     /**
@@ -580,6 +506,13 @@ public class Game
         return (System.currentTimeMillis() - activatedAt <= 60000);
     }
 
+    /**
+     * @return The seed of this game, which can be used to replay it exactly.
+     */
+    public long getSeed() {
+        return random.getSeed();
+    }
+
     /**
      * Set the number of players in the game.
      * @param players The number of players (1 or 2).
@@ -596,84 +529,28 @@ public class Game
     }
 
     /**
-     * Preparing the maze solver and setting boundaries.
-     */
-    private void initializeMazeSolver()
-    {
-        mazeSolver = new int[maze.getSize()+2][maze.getSize()+2];
-        for(int i = 0; i < maze.getSize(); i++) {
-            for(int j = 0; j < maze.getSize(); j++)
-                mazeSolver[i][j] = 0;    
-        }
-
-        for (int x = 0; x < maze.getSize()+2; x++) {
-            mazeSolver[x][0] = -1; // -1 means visited
-            mazeSolver[x][maze.getSize()+1] = -1;
-        }
-        for (int y = 0; y < maze.getSize()+2; y++) {
-            mazeSolver[0][y] = -1;
-            mazeSolver[maze.getSize()+1][y] = -1;
-        }       
-    }
-
-    /**
-     * My implementation was inspired by the maze created by Dr. David Eck, 
+     * Shows the way out of the maze, one room at a time, backtracking out of dead ends.
+     * The whole search is recorded first by a MazeSolver and then played back on the canvas
+     * by a SolverAnimator, so it takes as long as the frames it needs, not as long as the drawing.
+     * My original solver was inspired by the maze created by Dr. David Eck, 
      * found at http://math.hws.edu/xJava/other/maze.html 
      * and accessed on 11/04/2016.
-     * @param row The row of the current room to be solved.
-     * @param col The column of the current room to be solved.
-     * @return True if the solver has reached the end of the maze.
      */
-    private boolean solveMaze(int row, int col) {
-
-        if (mp3 == null || mp3.hasEnded())
-        {
-            filename = "./sounds/pacman.mp3"; // https://www.youtube.com/watch?v=BxYzjjs6d1s, accessed on 11/04/2016
-            mp3 = new MP3(filename);
-            mp3.play();
-        }
-
-        // Try to solve the maze by continuing current path from position (row,col).
-        // Return true if a solution is found.
-        // The maze is considered to be solved if the path reaches the lower right cell.
-        if (mazeSolver[row][col] == 0) {
-            mazeSolver[row][col] = 1;      //add this cell to the path
-            renderer.renderSolution(maze.getRoom(row, col));
-            renderer.refresh();
-            if (row == maze.getSize() && col == maze.getSize()) {
-                mp3.close();
-                JOptionPane.showMessageDialog(null, "The End!!!", "BYE", JOptionPane.PLAIN_MESSAGE);
-                return true; //path has reached goal
-            }
-
-            try { Thread.sleep(speedSolver); }
-            catch (InterruptedException e) { }
-
-            if (maze.getRoom(row, col).getEastExit() != null)
-                if (solveMaze(row,col+1))
-                    return true;
-
-            if (maze.getRoom(row, col).getSouthExit() != null)
-                if (solveMaze(row+1,col))
-                    return true;
-
-            if (maze.getRoom(row, col).getNorthExit() != null)
-                if (solveMaze(row-1,col))
-                    return true;
-
-            if (maze.getRoom(row, col).getWestExit() != null)
-                if (solveMaze(row,col-1))
-                    return true;
+    private void replaySolution()
+    {
+        mp3.close();
+        filename = "./sounds/pacman.mp3"; // https://www.youtube.com/watch?v=BxYzjjs6d1s, accessed on 11/04/2016
+        mp3 = new MP3(filename);
+        mp3.play();
 
-            // maze can't be solved from this cell, so backtract out of the cell
-            mazeSolver[row][col] = -1;   // mark cell as having been visited
-            renderer.renderRoom(maze.getRoom(row, col));
-            renderer.refresh();
+        // the maze is considered to be solved when the search reaches the lower right room,
+        // trying east, south, north and west like the original solver, even after walls have been broken
+        MazeGrid grid = maze.getGrid();
+        int[] trace = new MazeSolver(grid).traceDFS(grid.index(1, 1), grid.index(maze.getSize(), maze.getSize()));
+        new SolverAnimator(canvas, grid, solverFrameRate, solverMovesPerFrame).play(trace);
 
-            try { Thread.sleep(speedSolver); }
-            catch (InterruptedException e) { }
-        }
-        return false;
+        mp3.close();
+        JOptionPane.showMessageDialog(null, "The End!!!", "BYE", JOptionPane.PLAIN_MESSAGE);
     }
 
     /**
@@ -773,33 +650,65 @@ public class Game
     }
 
     /**
-     * Create evil demon circles randomly somewhere from 2,2 to 23,23 in the maze.
-     * @param n The number of evil circles to be created.
+     * Draws the rooms of all the items of a one player game from the placement stream, in the order
+     * they are placed: the dots anywhere but the last row and column, then the evil circles and
+     * the power-ups somewhere from 2,2 to (size-1),(size-1). MazeBatch uses it too, so that it
+     * checks the very rooms a game with the same seed places its items in.
+     * @param placement The placement stream of the game, see GameRandom.getPlacementRandom.
+     * @param size The size of the maze.
+     * @param rows Filled with the row of every item, ITEMS of them: DOTS, EVIL_CIRCLES then POWER_UPS.
+     * @param cols Filled with the column of every item.
+     */
+    static void placeItems(SplittableRandom placement, int size, int[] rows, int[] cols)
+    {
+        for (int i = 0; i < ITEMS; i++) {
+            if (i < DOTS) {
+                rows[i] = placement.nextInt(size - 1) + 1;
+                cols[i] = placement.nextInt(size - 1) + 1;
+            }
+            else {
+                rows[i] = placement.nextInt(size - 2) + 2;
+                cols[i] = placement.nextInt(size - 2) + 2;
+            }
+        }
+    }
+
+    /**
+     * Create the evil demon circles in rooms drawn by placeItems.
+     * @param rows The rows drawn by placeItems.
+     * @param cols The columns drawn by placeItems.
+     * @param first The position of the first evil circle in them.
      */
-    private void createEvilCircles(int n) {
-        ex = new int[n];
-        ey = new int[n];
+    private void createEvilCircles(int[] rows, int[] cols, int first) {
+        int n = EVIL_CIRCLES;
+        evils = new EnemySystem(maze, n);
+        pursuit = new DistanceField[] {new DistanceField(maze, x, y)};
+        evils.setPursuit(evilChase, pursuit);
+        evils.setCooperation(evilHorizon);
 
         for (int i = 0; i < n; i++)
         {
-            ex[i] = Maze.randomNum(23) + 2;
-            ey[i] = Maze.randomNum(23) + 2;
-            maze.getRoom(ex[i], ey[i]).setEvilInRoom(i + 1, true);
-            renderer.renderRoom(maze.getRoom(ex[i], ey[i]));      
+            int ex = rows[first + i];
+            int ey = cols[first + i];
+            evils.add(ex, ey);
+            renderer.renderRoom(maze.getRoom(ex, ey));      
         }
     }
 
     /**
-     * Create the triangle power-ups randomly somewhere from 2,2 to 23,23 in the maze.
+     * Create the triangle power-ups in rooms drawn by placeItems.
+     * @param rows The rows drawn by placeItems.
+     * @param cols The columns drawn by placeItems.
+     * @param first The position of the first power-up in them.
      */
-    private void createPowerUps() {
-        powerUpX = new int[6];
-        powerUpY = new int[6];
+    private void createPowerUps(int[] rows, int[] cols, int first) {
+        powerUpX = new int[POWER_UPS];
+        powerUpY = new int[POWER_UPS];
 
-        for (int i = 0; i < 6; i++)
+        for (int i = 0; i < POWER_UPS; i++)
         {
-            powerUpX[i] = Maze.randomNum(23) + 2;
-            powerUpY[i] = Maze.randomNum(23) + 2;
+            powerUpX[i] = rows[first + i];
+            powerUpY[i] = cols[first + i];
             if (i < 2)
                 maze.getRoom(powerUpX[i], powerUpY[i]).setKillEvilCircleInRoom(i + 1, true);
             else if (i < 4)
@@ -850,16 +759,19 @@ public class Game
     }
 
     /**
-     * Terminates the game if the player runs into one of the evil circles and is not invincible at the moment of the encounter.
+     * Ends the game if the player runs into one of the evil circles and is not invincible at the moment of the encounter.
+     * @return True if the player has been caught and the game is over.
      */
-    private void detectLoss() {
+    private boolean detectLoss() {
         if (!isInvActive()){
-            if (maze.getRoom(x,y).isEvilInRoom(1) || maze.getRoom(x,y).isEvilInRoom(2) || maze.getRoom(x,y).isEvilInRoom(3)) {
+            if (maze.getOccupancy().has(OccupancyIndex.EVIL, maze.getGrid().index(x, y))) {
                 JOptionPane.showMessageDialog(null, "Oh no! The evil demon caught you!", "OH NO!", JOptionPane.PLAIN_MESSAGE);
                 playSoundEffect("lose");
-                System.exit(0);
+                mp3.close();
+                return true;
             }
         }        
+        return false;
     }
 
     /**
@@ -0,0 +1,68 @@
+import java.util.SplittableRandom;
+
+/**
+ * The random number generators of one game, all derived from a single 64-bit seed.
+ * Every subsystem draws from its own independent stream, split off the seed in a fixed order,
+ * so the same seed always gives the same maze, placements and enemy walks,
+ * no matter how many numbers the other subsystems consume.
+ * The streams are not shared between games, so there is no contention between them.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class GameRandom
+{
+    private long seed; // the seed all streams are derived from
+    private SplittableRandom mazeRandom; // maze generation
+    private SplittableRandom placementRandom; // dots, evil circles and power-ups
+    private SplittableRandom evilRandom; // evil circle movement
+    private SplittableRandom renderRandom; // cosmetic jitter in the renderer
+
+    /**
+     * Creates the streams for a game with a fresh random seed.
+     */
+    public GameRandom()
+    {
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates the streams for a game with the given seed.
+     * @param seed The game seed.
+     */
+    public GameRandom(long seed)
+    {
+        this.seed = seed;
+
+        SplittableRandom root = new SplittableRandom(seed);
+        mazeRandom = root.split();
+        placementRandom = root.split();
+        evilRandom = root.split();
+        renderRandom = root.split();
+    }
+
+    /**
+     * @return seed The seed of the game, which can be used to replay it exactly.
+     */
+    public long getSeed() {return seed;}
+
+    /**
+     * @return The stream used to generate the maze.
+     */
+    public SplittableRandom getMazeRandom() {return mazeRandom;}
+
+    /**
+     * @return The stream used to place the dots, evil circles and power-ups.
+     */
+    public SplittableRandom getPlacementRandom() {return placementRandom;}
+
+    /**
+     * @return The stream used to move the evil circles.
+     */
+    public SplittableRandom getEvilRandom() {return evilRandom;}
+
+    /**
+     * @return The stream used by the renderer.
+     */
+    public SplittableRandom getRenderRandom() {return renderRandom;}
+}
\ No newline at end of file
@@ -0,0 +1,714 @@
+import java.util.Arrays;
+
+/**
+ * Hierarchical path finding (HPA*) for large mazes, including mazes with loops,
+ * like the ones left after Game.breakWalls, where tree-only tricks like TreeDistanceOracle do not apply.
+ *
+ * The grid is split into square clusters. Inside every cluster, dead ends that lead nowhere
+ * (no way out of the cluster) are pruned, and what is left is reduced to a small graph: its nodes
+ * are the entrances (rooms with a passage into another cluster) and the junctions between them,
+ * and its edges are the corridors joining them, weighted by their length.
+ * A query searches the rooms of the start and goal clusters, then runs A* over the small graph
+ * of nodes, where crossing into a neighboring cluster costs one step, and finally refines the
+ * result into rooms by walking the corridors. The distances found are exact.
+ *
+ * When a wall changes, only the clusters on either side of it are rebuilt (see wallChanged);
+ * registered with Maze.addMazeListener, the pathfinder follows the walls broken in the game by itself.
+ * A passage only counts once it is open from both sides, as MazeGrid.carve and Game.breakWalls leave it,
+ * so a wall that is being opened one side at a time is never half in the graph.
+ * Rooms are packed cell indices (see MazeGrid.index); the boundary ring is never entered.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class HierarchicalPathfinder implements MazeListener
+{
+    private static final int UNREACHED = -1;
+
+    private MazeGrid grid;
+    private int clusterSize; // number of rooms in each row & col of a cluster
+    private int clusterRows, clusterCols; // number of clusters down & across
+    private Cluster[] clusters;
+    private long[] kept; // bitset of the rooms left in the cluster graphs after pruning dead ends
+
+    // the abstract graph, numbered across all clusters
+    private int[] base; // number of the first node of every cluster
+    private int[] nodeCell; // packed index of every node
+    private int[] nodeCluster; // cluster of every node
+    private int[] nodeX, nodeY; // row and column of every node
+    private int[] crossStart; // first passage into a neighboring cluster of every node, plus one past the last
+    private int[] crossTarget; // node on the other side of every such passage
+    private byte[] crossDirection; // direction of every such passage
+    private int nodeCount;
+    private boolean renumber; // true if a cluster changed since the nodes were numbered
+
+    // A* over the nodes, indexed by node number
+    private int[] reached; // number of the search that last reached each node
+    private int[] cost; // steps from the start
+    private int[] remaining; // Manhattan distance to the goal
+    private int[] parentNode; // node each node was reached from, -1 for the nodes of the start cluster
+    private byte[] parentDirection; // direction of the first step from the parent node
+    private int[] heap;
+    private int[] heapIndex;
+    private int search;
+    private int nodesExpanded;
+    private int lastNode; // the node the last query left the graph at for the goal, -1 if it stayed in one cluster
+
+    // searches of the rooms of one cluster, indexed by room within the cluster
+    private int[] fromStart, toGoal; // steps from the start and to the goal, UNREACHED if none
+    private byte[] fromStartDirection, toGoalDirection; // direction of the step into each room
+    private int[] localQueue;
+    private byte[] degree; // building: passages to rooms still in the cluster graph
+    private int[] localNode; // building: node number within the cluster, -1 for other rooms
+
+    private int[] path; // the path being put together by the last query
+    private int pathLength;
+
+    /**
+     * Constructor for objects of class HierarchicalPathfinder, which builds every cluster.
+     * @param grid The grid holding the walls of the maze.
+     * @param clusterSize The number of rooms in each row & col of a cluster, such as 64 or 128.
+     */
+    public HierarchicalPathfinder(MazeGrid grid, int clusterSize)
+    {
+        if (clusterSize < 2)
+            throw new IllegalArgumentException("Invalid cluster size: " + clusterSize);
+
+        this.grid = grid;
+        this.clusterSize = clusterSize;
+        clusterRows = (grid.getRows() + clusterSize - 1) / clusterSize;
+        clusterCols = (grid.getCols() + clusterSize - 1) / clusterSize;
+        clusters = new Cluster[clusterRows * clusterCols];
+        kept = new long[(grid.getLength() + 63) >>> 6];
+        base = new int[clusters.length + 1];
+
+        int area = clusterSize * clusterSize;
+        fromStart = new int[area];
+        toGoal = new int[area];
+        fromStartDirection = new byte[area];
+        toGoalDirection = new byte[area];
+        localQueue = new int[area];
+        degree = new byte[area];
+        localNode = new int[area];
+        path = new int[1024];
+
+        for (int c = 0; c < clusters.length; c++)
+            build(c);
+        number();
+    }
+
+    /**
+     * Rebuilds the clusters on both sides of a wall that has been added or removed.
+     * @param cell The packed index of a room next to the wall.
+     * @param direction The side of the room the wall is on (MazeGrid.NORTH, SOUTH, EAST or WEST).
+     */
+    public void wallChanged(int cell, int direction)
+    {
+        build(clusterOf(cell));
+        int next = grid.neighbor(cell, direction);
+        if (!grid.isBoundary(next) && clusterOf(next) != clusterOf(cell))
+            build(clusterOf(next));
+        renumber = true;
+    }
+
+    /**
+     * Rebuilds the clusters on both sides of a wall changed through the rooms of a maze.
+     * @param x The row of the room whose side changed.
+     * @param y The column of the room whose side changed.
+     * @param direction The side of the room.
+     * @param opened True if an exit was opened, false if a wall was put back.
+     */
+    public void wallChanged(int x, int y, int direction, boolean opened)
+    {
+        wallChanged(grid.index(x, y), direction);
+    }
+
+    /**
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The number of steps on a shortest path, or -1 if the goal cannot be reached.
+     */
+    public int distance(int start, int goal)
+    {
+        return searchNodes(start, goal);
+    }
+
+    /**
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The rooms of a shortest path from start to goal, or null if the goal cannot be reached.
+     */
+    public int[] findPath(int start, int goal)
+    {
+        if (searchNodes(start, goal) < 0)
+            return null;
+
+        int last = lastNode;
+        pathLength = 0;
+        if (last < 0) {
+            // straight from the start to the goal inside their cluster
+            appendLocal(clusterOf(start), goal, fromStartDirection, false);
+        }
+        else {
+            // the nodes from the last one back to the first, then the rooms in order
+            int count = 0;
+            for (int n = last; n >= 0; n = parentNode[n])
+                count++;
+            int[] nodes = new int[count];
+            for (int n = last, i = count - 1; n >= 0; n = parentNode[n], i--)
+                nodes[i] = n;
+
+            appendLocal(clusterOf(nodeCell[nodes[0]]), nodeCell[nodes[0]], fromStartDirection, false);
+            for (int i = 1; i < count; i++)
+                appendCorridor(nodeCell[nodes[i - 1]], parentDirection[nodes[i]], nodeCell[nodes[i]]);
+            appendLocal(clusterOf(goal), nodeCell[last], toGoalDirection, true);
+        }
+        return Arrays.copyOf(path, pathLength);
+    }
+
+    /**
+     * @return The number of nodes expanded by the last query.
+     */
+    public int getNodesExpanded() {return nodesExpanded;}
+
+    /**
+     * @return The number of nodes in the abstract graph.
+     */
+    public int getNodeCount()
+    {
+        if (renumber)
+            number();
+        return nodeCount;
+    }
+
+    /**
+     * @return The number of rooms in each row & col of a cluster.
+     */
+    public int getClusterSize() {return clusterSize;}
+
+    /**
+     * Searches the start and goal clusters and then the abstract graph,
+     * leaving the last node of the path in lastNode.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The number of steps on a shortest path, or -1 if the goal cannot be reached.
+     */
+    private int searchNodes(int start, int goal)
+    {
+        if (renumber)
+            number();
+
+        nodesExpanded = 0;
+        int startCluster = clusterOf(start), goalCluster = clusterOf(goal);
+        searchCluster(startCluster, start, fromStart, fromStartDirection);
+        searchCluster(goalCluster, goal, toGoal, toGoalDirection);
+
+        int best = Integer.MAX_VALUE, last = -1;
+        if (startCluster == goalCluster && fromStart[local(startCluster, goal)] != UNREACHED)
+            best = fromStart[local(startCluster, goal)];
+
+        search++;
+        if (search == 0) {
+            Arrays.fill(reached, 0);
+            search = 1;
+        }
+        int goalX = grid.getX(goal), goalY = grid.getY(goal);
+        int size = 0;
+
+        // every node of the start cluster the start can reach is a way in
+        Cluster cluster = clusters[startCluster];
+        for (int i = 0; i < cluster.nodes.length; i++) {
+            int steps = fromStart[local(startCluster, cluster.nodes[i])];
+            if (steps != UNREACHED)
+                size = relax(base[startCluster] + i, steps, -1, 0, goalX, goalY, size);
+        }
+
+        while (size > 0) {
+            int n = heap[0];
+            if (cost[n] + remaining[n] >= best)
+                break;
+            size = pop(size);
+            nodesExpanded++;
+
+            int c = nodeCluster[n];
+            if (c == goalCluster) {
+                int steps = toGoal[local(c, nodeCell[n])];
+                if (steps != UNREACHED && cost[n] + steps < best) {
+                    best = cost[n] + steps;
+                    last = n;
+                }
+            }
+
+            // corridors inside the cluster
+            cluster = clusters[c];
+            int i = n - base[c];
+            for (int e = cluster.edgeStart[i]; e < cluster.edgeStart[i + 1]; e++)
+                size = relax(base[c] + cluster.edgeTarget[e], cost[n] + cluster.edgeLength[e], n, cluster.edgeDirection[e], goalX, goalY, size);
+
+            // passages into the neighboring clusters
+            for (int e = crossStart[n]; e < crossStart[n + 1]; e++)
+                size = relax(crossTarget[e], cost[n] + 1, n, crossDirection[e], goalX, goalY, size);
+        }
+
+        lastNode = last;
+        return best == Integer.MAX_VALUE ? -1 : best;
+    }
+
+    /**
+     * Reaches a node with a number of steps, if that is fewer than before.
+     * @return The new number of nodes in the heap.
+     */
+    private int relax(int n, int steps, int from, int direction, int goalX, int goalY, int size)
+    {
+        if (reached[n] != search) {
+            reached[n] = search;
+            cost[n] = steps;
+            remaining[n] = Math.abs(nodeX[n] - goalX) + Math.abs(nodeY[n] - goalY);
+            parentNode[n] = from;
+            parentDirection[n] = (byte) direction;
+            heap[size] = n;
+            heapIndex[n] = size;
+            siftUp(size);
+            return size + 1;
+        }
+        if (steps < cost[n] && heapIndex[n] >= 0) {
+            cost[n] = steps;
+            parentNode[n] = from;
+            parentDirection[n] = (byte) direction;
+            siftUp(heapIndex[n]);
+        }
+        return size;
+    }
+
+    /**
+     * Breadth-first search of the rooms of one cluster.
+     * @param c The cluster.
+     * @param from The packed index of the room to search from.
+     * @param steps Filled with the steps from that room to every room of the cluster.
+     * @param direction Filled with the direction of the step into every room reached.
+     */
+    private void searchCluster(int c, int from, int[] steps, byte[] direction)
+    {
+        Cluster cluster = clusters[c];
+        Arrays.fill(steps, UNREACHED);
+        int head = 0, tail = 0;
+        steps[local(c, from)] = 0;
+        localQueue[tail++] = from;
+
+        while (head < tail) {
+            int cell = localQueue[head++];
+            int here = steps[local(c, cell)];
+            for (int d = MazeGrid.NORTH; d <= MazeGrid.WEST; d <<= 1) {
+                if (!isPassage(cell, d))
+                    continue;
+                int next = grid.neighbor(cell, d);
+                if (!cluster.contains(grid, next) || steps[local(c, next)] != UNREACHED)
+                    continue;
+                steps[local(c, next)] = here + 1;
+                direction[local(c, next)] = (byte) d;
+                localQueue[tail++] = next;
+            }
+        }
+    }
+
+    /**
+     * Adds the rooms between the start or the goal and a room of its cluster to the path,
+     * following the directions left by searchCluster.
+     * @param c The cluster.
+     * @param cell The packed index of the room at the other end.
+     * @param direction The directions from searchCluster.
+     * @param towardsGoal False to add the rooms from the start to the cell, true from the cell to the goal.
+     */
+    private void appendLocal(int c, int cell, byte[] direction, boolean towardsGoal)
+    {
+        int[] steps = towardsGoal ? toGoal : fromStart;
+        int count = steps[local(c, cell)] + 1;
+        ensurePath(pathLength + count);
+
+        // walk back along the search to where it started
+        int first = pathLength;
+        for (int i = 0; i < count; i++) {
+            path[towardsGoal ? first + i : first + count - 1 - i] = cell;
+            if (i < count - 1)
+                cell = grid.neighbor(cell, MazeGrid.opposite(direction[local(c, cell)]));
+        }
+        // the node at the start of the goal part is already in the path
+        if (towardsGoal && pathLength > 0) {
+            System.arraycopy(path, first + 1, path, first, count - 1);
+            count--;
+        }
+        pathLength += count;
+    }
+
+    /**
+     * Adds the rooms of a corridor or a passage between two clusters to the path.
+     * @param from The packed index of the node the corridor starts at, already in the path.
+     * @param direction The direction of the first step.
+     * @param to The packed index of the node the corridor ends at.
+     */
+    private void appendCorridor(int from, int direction, int to)
+    {
+        Cluster cluster = clusters[clusterOf(from)];
+        int previous = from;
+        int cell = grid.neighbor(from, direction);
+        ensurePath(pathLength + 1);
+        path[pathLength++] = cell;
+
+        while (cell != to) {
+            int next = -1;
+            for (int d = MazeGrid.NORTH; d <= MazeGrid.WEST && next < 0; d <<= 1) {
+                if (!isPassage(cell, d))
+                    continue;
+                int n = grid.neighbor(cell, d);
+                if (n != previous && cluster.contains(grid, n) && isKept(n))
+                    next = n;
+            }
+            previous = cell;
+            cell = next;
+            ensurePath(pathLength + 1);
+            path[pathLength++] = cell;
+        }
+    }
+
+    /**
+     * Builds the graph of one cluster: prunes the dead ends, picks the nodes and follows the corridors between them.
+     * @param c The cluster.
+     */
+    private void build(int c)
+    {
+        int top = (c / clusterCols) * clusterSize + 1;
+        int left = (c % clusterCols) * clusterSize + 1;
+        Cluster cluster = new Cluster(top, left, Math.min(top + clusterSize - 1, grid.getRows()), Math.min(left + clusterSize - 1, grid.getCols()));
+        clusters[c] = cluster;
+
+        // count the passages of every room, inside the cluster and out of it
+        int tail = 0;
+        for (int x = cluster.top; x <= cluster.bottom; x++) {
+            for (int y = cluster.left; y <= cluster.right; y++) {
+                int cell = grid.index(x, y);
+                int l = local(c, cell);
+                int inside = 0;
+                boolean entrance = false;
+                for (int d = MazeGrid.NORTH; d <= MazeGrid.WEST; d <<= 1) {
+                    if (!isPassage(cell, d))
+                        continue;
+                    int next = grid.neighbor(cell, d);
+                    if (cluster.contains(grid, next))
+                        inside++;
+                    else if (!grid.isBoundary(next))
+                        entrance = true;
+                }
+                setKept(cell, true);
+                degree[l] = (byte) (entrance ? -1 : inside); // -1 marks entrances, which are never pruned
+                if (!entrance && inside <= 1)
+                    localQueue[tail++] = cell;
+            }
+        }
+
+        // prune dead ends, which may turn the room before them into a dead end
+        for (int head = 0; head < tail; head++) {
+            int cell = localQueue[head];
+            setKept(cell, false);
+            for (int d = MazeGrid.NORTH; d <= MazeGrid.WEST; d <<= 1) {
+                if (!isPassage(cell, d))
+                    continue;
+                int next = grid.neighbor(cell, d);
+                if (!cluster.contains(grid, next) || !isKept(next))
+                    continue;
+                int l = local(c, next);
+                if (degree[l] > 0 && --degree[l] == 1)
+                    localQueue[tail++] = next;
+            }
+        }
+
+        // the nodes are the entrances and the junctions, numbered in row order
+        int count = 0;
+        for (int x = cluster.top; x <= cluster.bottom; x++) {
+            for (int y = cluster.left; y <= cluster.right; y++) {
+                int cell = grid.index(x, y);
+                int l = local(c, cell);
+                localNode[l] = -1;
+                if (isKept(cell) && degree[l] != 2)
+                    localQueue[localNode[l] = count++] = cell;
+            }
+        }
+        cluster.nodes = Arrays.copyOf(localQueue, count);
+
+        // follow every corridor out of every node to the node at its other end
+        int[] start = new int[count + 1];
+        int[] target = new int[4 * count];
+        int[] length = new int[4 * count];
+        byte[] first = new byte[4 * count];
+        int edges = 0;
+        for (int i = 0; i < count; i++) {
+            start[i] = edges;
+            int from = cluster.nodes[i];
+            for (int d = MazeGrid.NORTH; d <= MazeGrid.WEST; d <<= 1) {
+                if (!isPassage(from, d))
+                    continue;
+                int cell = grid.neighbor(from, d);
+                if (!cluster.contains(grid, cell) || !isKept(cell))
+                    continue;
+
+                int previous = from, steps = 1;
+                while (localNode[local(c, cell)] < 0) {
+                    int next = -1;
+                    for (int e = MazeGrid.NORTH; e <= MazeGrid.WEST && next < 0; e <<= 1) {
+                        if (!isPassage(cell, e))
+                            continue;
+                        int n = grid.neighbor(cell, e);
+                        if (n != previous && cluster.contains(grid, n) && isKept(n))
+                            next = n;
+                    }
+                    previous = cell;
+                    cell = next;
+                    steps++;
+                }
+
+                int to = localNode[local(c, cell)];
+                if (to == i)
+                    continue; // a loop back to the same node is never a shortcut
+                target[edges] = to;
+                length[edges] = steps;
+                first[edges] = (byte) d;
+                edges++;
+            }
+        }
+        start[count] = edges;
+
+        cluster.edgeStart = start;
+        cluster.edgeTarget = Arrays.copyOf(target, edges);
+        cluster.edgeLength = Arrays.copyOf(length, edges);
+        cluster.edgeDirection = Arrays.copyOf(first, edges);
+    }
+
+    /**
+     * Numbers the nodes of all the clusters one after the other, sizes the A* arrays to fit,
+     * and links every entrance to the node on the other side of its passages.
+     * This takes time proportional to the number of nodes, far less than rebuilding the clusters.
+     */
+    private void number()
+    {
+        nodeCount = 0;
+        for (int c = 0; c < clusters.length; c++) {
+            base[c] = nodeCount;
+            nodeCount += clusters[c].nodes.length;
+        }
+        base[clusters.length] = nodeCount;
+
+        if (nodeCell == null || nodeCell.length < nodeCount) {
+            int capacity = nodeCount + nodeCount / 8;
+            nodeCell = new int[capacity];
+            nodeCluster = new int[capacity];
+            nodeX = new int[capacity];
+            nodeY = new int[capacity];
+            crossStart = new int[capacity + 1];
+            reached = new int[capacity];
+            cost = new int[capacity];
+            remaining = new int[capacity];
+            parentNode = new int[capacity];
+            parentDirection = new byte[capacity];
+            heap = new int[capacity];
+            heapIndex = new int[capacity];
+            search = 0;
+        }
+        else {
+            // node numbers have moved, so earlier searches must not count
+            Arrays.fill(reached, 0);
+            search = 0;
+        }
+
+        for (int c = 0; c < clusters.length; c++) {
+            System.arraycopy(clusters[c].nodes, 0, nodeCell, base[c], clusters[c].nodes.length);
+            Arrays.fill(nodeCluster, base[c], base[c + 1], c);
+        }
+
+        // the passages between clusters, found again since the node numbers on both sides may have moved
+        int crossings = 0;
+        for (int n = 0; n < nodeCount; n++) {
+            nodeX[n] = grid.getX(nodeCell[n]);
+            nodeY[n] = grid.getY(nodeCell[n]);
+            crossStart[n] = crossings;
+            crossings += crossings(n, null, null);
+        }
+        crossStart[nodeCount] = crossings;
+        if (crossTarget == null || crossTarget.length < crossings) {
+            crossTarget = new int[crossings + crossings / 8];
+            crossDirection = new byte[crossTarget.length];
+        }
+        for (int n = 0; n < nodeCount; n++)
+            crossings(n, crossTarget, crossDirection);
+        renumber = false;
+    }
+
+    /**
+     * Finds the passages from a node into neighboring clusters.
+     * @param n The number of the node.
+     * @param target If not null, filled from crossStart[n] with the node on the other side of each passage.
+     * @param direction If not null, filled from crossStart[n] with the direction of each passage.
+     * @return The number of passages.
+     */
+    private int crossings(int n, int[] target, byte[] direction)
+    {
+        int cell = nodeCell[n], count = 0;
+        for (int d = MazeGrid.NORTH; d <= MazeGrid.WEST; d <<= 1) {
+            if (!isPassage(cell, d))
+                continue;
+            int next = grid.neighbor(cell, d);
+            if (grid.isBoundary(next))
+                continue;
+            int c = clusterOf(next);
+            if (c == nodeCluster[n])
+                continue;
+            if (target != null) {
+                target[crossStart[n] + count] = base[c] + find(clusters[c], next);
+                direction[crossStart[n] + count] = (byte) d;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @return The cluster holding the room.
+     */
+    private int clusterOf(int cell)
+    {
+        return ((grid.getX(cell) - 1) / clusterSize) * clusterCols + (grid.getY(cell) - 1) / clusterSize;
+    }
+
+    /**
+     * @param c A cluster.
+     * @param cell The packed index of a room in that cluster.
+     * @return The number of the room within the cluster, in row order.
+     */
+    private int local(int c, int cell)
+    {
+        Cluster cluster = clusters[c];
+        return (grid.getX(cell) - cluster.top) * clusterSize + (grid.getY(cell) - cluster.left);
+    }
+
+    /**
+     * @param cluster A cluster.
+     * @param cell The packed index of one of its nodes.
+     * @return The number of the node within the cluster.
+     */
+    private static int find(Cluster cluster, int cell)
+    {
+        return Arrays.binarySearch(cluster.nodes, cell);
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @param direction One of MazeGrid.NORTH, SOUTH, EAST or WEST.
+     * @return True if the room and its neighbor in that direction both have an exit towards each other.
+     */
+    private boolean isPassage(int cell, int direction)
+    {
+        return grid.hasExit(cell, direction) && grid.hasExit(grid.neighbor(cell, direction), MazeGrid.opposite(direction));
+    }
+
+    private boolean isKept(int cell) {return (kept[cell >>> 6] & (1L << cell)) != 0;}
+
+    private void setKept(int cell, boolean on)
+    {
+        if (on)
+            kept[cell >>> 6] |= 1L << cell;
+        else
+            kept[cell >>> 6] &= ~(1L << cell);
+    }
+
+    /**
+     * Makes room in the path buffer.
+     * @param capacity The number of rooms it must be able to hold.
+     */
+    private void ensurePath(int capacity)
+    {
+        if (capacity > path.length)
+            path = Arrays.copyOf(path, Math.max(capacity, path.length * 2));
+    }
+
+    private boolean before(int a, int b)
+    {
+        int fa = cost[a] + remaining[a];
+        int fb = cost[b] + remaining[b];
+        return fa < fb || (fa == fb && remaining[a] < remaining[b]);
+    }
+
+    private int pop(int size)
+    {
+        heapIndex[heap[0]] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            heapIndex[heap[0]] = 0;
+            siftDown(0, size);
+        }
+        return size;
+    }
+
+    private void siftUp(int i)
+    {
+        int n = heap[i];
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (!before(n, heap[up]))
+                break;
+            heap[i] = heap[up];
+            heapIndex[heap[i]] = i;
+            i = up;
+        }
+        heap[i] = n;
+        heapIndex[n] = i;
+    }
+
+    private void siftDown(int i, int size)
+    {
+        int n = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && before(heap[child + 1], heap[child]))
+                child++;
+            if (!before(heap[child], n))
+                break;
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = n;
+        heapIndex[n] = i;
+    }
+
+    /**
+     * The rooms of one cluster and the graph of its nodes and corridors.
+     */
+    private static class Cluster
+    {
+        int top, left, bottom, right; // the rooms covered, inclusive
+        int[] nodes; // packed indices of the nodes, in row order, so sorted
+        int[] edgeStart; // first corridor of every node, plus one past the last
+        int[] edgeTarget; // node at the other end of every corridor
+        int[] edgeLength; // steps along every corridor
+        byte[] edgeDirection; // direction of the first step of every corridor
+
+        Cluster(int top, int left, int bottom, int right)
+        {
+            this.top = top;
+            this.left = left;
+            this.bottom = bottom;
+            this.right = right;
+        }
+
+        /**
+         * @return True if the room is inside this cluster.
+         */
+        boolean contains(MazeGrid grid, int cell)
+        {
+            int x = grid.getX(cell), y = grid.getY(cell);
+            return x >= top && x <= bottom && y >= left && y <= right;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The randomized Kruskal maze generation algorithm.
+ * Every wall between two rooms is an edge; the edges are shuffled and a wall is knocked down
+ * whenever the rooms on its two sides are not connected yet, which is tracked with a union-find.
+ * This gives mazes with many short dead ends, unlike the long corridors of the depth-first carve.
+ *
+ * In parallel mode the shuffled edges are split between the threads of a ForkJoinPool and
+ * merged with a ConcurrentUnionFind. The result is still a perfect maze, but which of the
+ * competing edges win depends on the scheduling, so it is not reproducible from the seed.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class KruskalMazeGenerator implements MazeGenerator
+{
+    private static final int CHUNK = 1 << 16; // edges handled by one parallel task
+
+    private ForkJoinPool pool; // pool used to process the edges, null for sequential mode
+
+    /**
+     * Constructor for objects of class KruskalMazeGenerator, processing the edges sequentially.
+     */
+    public KruskalMazeGenerator()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor for objects of class KruskalMazeGenerator.
+     * @param pool The pool used to process the edges in parallel, or null to process them sequentially.
+     */
+    public KruskalMazeGenerator(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Carves a perfect maze over the whole grid.
+     * @param grid The grid to carve, with no exits yet.
+     * @param rng The random number stream used to shuffle the walls.
+     */
+    public void generate(MazeGrid grid, SplittableRandom rng)
+    {
+        if (grid.getLength() > (Integer.MAX_VALUE >> 1))
+            throw new IllegalArgumentException("Maze too large for Kruskal's algorithm: " + grid.getRows() + " x " + grid.getCols());
+
+        int[] edges = shuffledEdges(grid, rng);
+
+        if (pool == null) {
+            UnionFind sets = new UnionFind(grid.getLength());
+            long passages = (long) grid.getRows() * grid.getCols() - 1;
+
+            for (int i = 0; i < edges.length && passages > 0; i++) {
+                int cell = edges[i] >>> 1;
+                int direction = (edges[i] & 1) == 0 ? MazeGrid.EAST : MazeGrid.SOUTH;
+                if (sets.union(cell, grid.neighbor(cell, direction))) {
+                    grid.carve(cell, direction);
+                    passages--;
+                }
+            }
+        }
+        else {
+            // each thread only marks the edges it owns, the walls are knocked down afterwards
+            pool.invoke(new JoinEdges(grid, new ConcurrentUnionFind(grid.getLength()), edges, 0, edges.length));
+
+            for (int i = 0; i < edges.length; i++) {
+                if (edges[i] >= 0)
+                    grid.carve(edges[i] >>> 1, (edges[i] & 1) == 0 ? MazeGrid.EAST : MazeGrid.SOUTH);
+            }
+        }
+    }
+
+    /**
+     * @param grid The grid the walls belong to.
+     * @param rng The random number stream used to shuffle the walls.
+     * @return Every wall between two rooms in random order, packed as (cell << 1) | (0 for east, 1 for south).
+     */
+    private int[] shuffledEdges(MazeGrid grid, SplittableRandom rng)
+    {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        int[] edges = new int[rows * (cols - 1) + (rows - 1) * cols];
+        int n = 0;
+
+        for (int x = 1; x <= rows; x++) {
+            for (int y = 1; y <= cols; y++) {
+                int cell = grid.index(x, y);
+                if (y < cols) edges[n++] = cell << 1;
+                if (x < rows) edges[n++] = (cell << 1) | 1;
+            }
+        }
+
+        // Fisher-Yates shuffle
+        for (int i = n - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int t = edges[i];
+            edges[i] = edges[j];
+            edges[j] = t;
+        }
+
+        return edges;
+    }
+
+    /**
+     * @return The name of the algorithm.
+     */
+    public String getName() {return pool == null ? "kruskal" : "kruskal (parallel)";}
+
+    /**
+     * Runs a range of edges through the union-find, splitting it in halves until it is small enough.
+     * Edges that would close a loop are overwritten with -1.
+     */
+    private static class JoinEdges extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private MazeGrid grid;
+        private ConcurrentUnionFind sets;
+        private int[] edges;
+        private int from, to; // range of edges
+
+        public JoinEdges(MazeGrid grid, ConcurrentUnionFind sets, int[] edges, int from, int to)
+        {
+            this.grid = grid;
+            this.sets = sets;
+            this.edges = edges;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new JoinEdges(grid, sets, edges, from, middle),
+                          new JoinEdges(grid, sets, edges, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                int cell = edges[i] >>> 1;
+                int direction = (edges[i] & 1) == 0 ? MazeGrid.EAST : MazeGrid.SOUTH;
+                if (!sets.union(cell, grid.neighbor(cell, direction)))
+                    edges[i] = -1;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,4 +1,5 @@
 import javax.swing.*;
+import java.io.IOException;
 
 /**
  * Creates a new maze game and starts gameplay.
@@ -33,15 +34,43 @@ public class Main
 
             players = Integer.parseInt(mode);
 
-            Game game = new Game();
+            // optional arguments: a seed to replay an earlier game exactly, and a stored maze to play in
+            long seed = new GameRandom().getSeed();
+            Maze maze = null;
+            for (String arg : args) {
+                try {
+                    seed = Long.parseLong(arg);
+                }
+                catch (NumberFormatException notSeed) {
+                    maze = Maze.load(arg);
+                }
+            }
 
-            game.setPlayers(players);
+            // the next mazes are prepared in the background while this game is played
+            MazePool pool = new MazePool(25, 3);
 
-            game.interact();
+            Game game = args.length > 0 ? new Game(seed, maze) : new Game(pool.take());
+            while (true) {
+                System.out.println("Game seed: " + game.getSeed());
+
+                game.setPlayers(players);
+
+                game.interact();
+
+                int again = JOptionPane.showConfirmDialog(null, "Play again?", "GAME OVER", JOptionPane.YES_NO_OPTION);
+                if (again != JOptionPane.YES_OPTION)
+                    break;
+                game = new Game(pool.take());
+            }
+            pool.shutdown();
+            System.exit(0);
         }
         catch (NullPointerException ex){
             
         }
+        catch (IOException ex) {
+            JOptionPane.showMessageDialog(null, ex.getMessage(), "Cannot load the maze", JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     /**
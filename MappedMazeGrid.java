@@ -0,0 +1,215 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A MazeGrid whose exit bits stay in a binary maze file (see MazeBinaryFile) instead of the heap.
+ * The file is mapped in segments of 64 MB, each one only when a room inside it is first touched,
+ * so a solver or renderer working on one region of a huge maze only maps that region
+ * and the page cache of the operating system does the rest.
+ *
+ * The boundary ring is not stored in the file: boundary rooms always read as BOUNDARY,
+ * and changes to them are ignored. The exit room named in the header always reads with its way
+ * out of the maze open, and the boundary room outside it with the way back in, as if Maze had
+ * carved the exit, so a Maze can wrap the grid without anything being written to the file.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class MappedMazeGrid extends MazeGrid implements Closeable
+{
+    private static final int SEGMENT_SHIFT = 26; // log2 of the size of a mapped segment
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private FileChannel channel;
+    private boolean writable;
+    private MappedByteBuffer[] segments; // mapped parts of the room data, null until first touched
+    private long dataSize; // number of bytes of room data
+    private long seed;
+    private int entryX, entryY, exitX, exitY;
+    private int exitDirection; // the side of the exit room leading out of the maze, 0 if it has none
+    private int exitCell, outsideCell; // packed indexes of the exit room and of the boundary room outside it
+
+    /**
+     * Constructor for objects of class MappedMazeGrid, used by MazeBinaryFile.open.
+     * @param channel The open file, positioned anywhere.
+     * @param writable True if the file was opened for writing.
+     * @param rows The number of rows of rooms.
+     * @param cols The number of columns of rooms.
+     * @param seed The seed stored in the header.
+     * @param entryAndExit The entry and exit rooms stored in the header, as x, y, x, y.
+     */
+    MappedMazeGrid(FileChannel channel, boolean writable, int rows, int cols, long seed, int[] entryAndExit)
+    {
+        super(rows, cols, false);
+
+        this.channel = channel;
+        this.writable = writable;
+        this.seed = seed;
+        entryX = entryAndExit[0];
+        entryY = entryAndExit[1];
+        exitX = entryAndExit[2];
+        exitY = entryAndExit[3];
+
+        // the exit leads out through the east side, like the one of Maze, unless the room is not in the last column
+        if (exitX < 1 || exitX > rows || exitY < 1 || exitY > cols)
+            exitDirection = 0;
+        else if (exitY == cols)
+            exitDirection = EAST;
+        else if (exitX == rows)
+            exitDirection = SOUTH;
+        else if (exitY == 1)
+            exitDirection = WEST;
+        else if (exitX == 1)
+            exitDirection = NORTH;
+        else
+            exitDirection = 0;
+        exitCell = exitDirection == 0 ? -1 : index(exitX, exitY);
+        outsideCell = exitDirection == 0 ? -1 : neighbor(exitCell, exitDirection);
+
+        dataSize = ((long) rows * cols + 1) / 2;
+        segments = new MappedByteBuffer[(int) ((dataSize + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @return The exit bits read from the file, with the exit of the header open,
+     *         or BOUNDARY for the boundary ring.
+     */
+    @Override
+    protected int getCell(int cell)
+    {
+        if (cell == outsideCell)
+            return BOUNDARY | opposite(exitDirection);
+
+        int cols = getCols();
+        int x = cell / getStride();
+        int y = cell - x * getStride();
+        if (x == 0 || x > getRows() || y == 0 || y > cols)
+            return BOUNDARY;
+
+        long room = (long) (x - 1) * cols + (y - 1);
+        long offset = room >>> 1;
+        int b = segment(offset).get((int) (offset & SEGMENT_MASK));
+        int bits = (room & 1) == 0 ? b & EXITS : (b >>> 4) & EXITS;
+        return cell == exitCell ? bits | exitDirection : bits;
+    }
+
+    /**
+     * Writes the exit bits of a room to the file. Changes to the boundary ring are ignored,
+     * and the exit of the header stays open.
+     * @param cell The packed index of a room.
+     * @param bits The bits to store; only the exit bits are kept.
+     */
+    @Override
+    protected void setCell(int cell, int bits)
+    {
+        int cols = getCols();
+        int x = cell / getStride();
+        int y = cell - x * getStride();
+        if (x == 0 || x > getRows() || y == 0 || y > cols)
+            return;
+
+        long room = (long) (x - 1) * cols + (y - 1);
+        long offset = room >>> 1;
+        MappedByteBuffer segment = segment(offset);
+        int index = (int) (offset & SEGMENT_MASK);
+        int b = segment.get(index);
+        if ((room & 1) == 0)
+            b = (b & 0xF0) | (bits & EXITS);
+        else
+            b = (b & 0x0F) | ((bits & EXITS) << 4);
+        segment.put(index, (byte) b);
+    }
+
+    /**
+     * Removes all exits, writing zeros over the whole room data.
+     */
+    @Override
+    public void clear()
+    {
+        for (long offset = 0; offset < dataSize; offset++)
+            segment(offset).put((int) (offset & SEGMENT_MASK), (byte) 0);
+    }
+
+    /**
+     * @param offset A byte offset into the room data.
+     * @return The mapped segment holding that byte, mapping it first if needed.
+     */
+    private MappedByteBuffer segment(long offset)
+    {
+        int s = (int) (offset >>> SEGMENT_SHIFT);
+        MappedByteBuffer segment = segments[s];
+        if (segment == null) {
+            long start = (long) s << SEGMENT_SHIFT;
+            try {
+                segment = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                                      MazeBinaryFile.HEADER_SIZE + start, Math.min(SEGMENT_MASK + 1, dataSize - start));
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            segments[s] = segment;
+        }
+        return segment;
+    }
+
+    /**
+     * @return The number of segments of the file mapped so far.
+     */
+    public int getMappedSegments()
+    {
+        int mapped = 0;
+        for (MappedByteBuffer segment : segments)
+            if (segment != null)
+                mapped++;
+        return mapped;
+    }
+
+    /**
+     * Writes any changes back to the file.
+     */
+    public void force()
+    {
+        for (MappedByteBuffer segment : segments)
+            if (segment != null && writable)
+                segment.force();
+    }
+
+    /**
+     * Closes the file. The segments already mapped stay readable until they are garbage collected.
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        force();
+        channel.close();
+    }
+
+    /**
+     * @return seed The seed stored in the file header.
+     */
+    public long getSeed() {return seed;}
+
+    /**
+     * @return The row of the entry room.
+     */
+    public int getEntryX() {return entryX;}
+
+    /**
+     * @return The column of the entry room.
+     */
+    public int getEntryY() {return entryY;}
+
+    /**
+     * @return The row of the exit room.
+     */
+    public int getExitX() {return exitX;}
+
+    /**
+     * @return The column of the exit room.
+     */
+    public int getExitY() {return exitY;}
+}
\ No newline at end of file
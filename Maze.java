@@ -1,115 +1,172 @@
-import java.util.Random;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * A class that generates a random maze procedurally.
  * Algorithm inspired by http://algs4.cs.princeton.edu/41graph/Maze.java.html.
- * 
+ *
+ * The walls are stored in a compact MazeGrid. Room objects are only thin views over the grid,
+ * created the first time somebody asks for them with getRoom.
+ *
  * Model part of the Game Engine Architecture.
- * 
+ *
  * @author https://github.com/f-z
  * @version 2016.11.11
  */
 
 public class Maze
 {
-    private Room[][] rooms; // 2-d array for rooms in the maze
+    private MazeGrid grid; // exit bits for every room in the maze
+    private Room[][] rooms; // room views, each row is allocated on first use
     private int size; // size of the maze, the maze is always square so size is the number of rows & the number of cols
-    private boolean[][] visited;
+    private SplittableRandom rng; // random number generator used for generating this maze
+    private int modifications; // number of exits opened since the maze was made, see getModifications
+    private List<MazeListener> listeners; // told about every change to the walls, null until the first one is added
+    private long wallHash; // Zobrist hash of the walls, valid once wallsHashed is true
+    private boolean wallsHashed; // false until getHash is first called
+    private long contentHash; // Zobrist hash of everything in the rooms, kept up to date from the start
+    private EnemySystem enemies; // the evil circles wandering in the maze, null if there are none
+    private OccupancyIndex occupancy; // what is in every room, made on first use
     @SuppressWarnings("unused")
     private boolean autoRefresh; // auto refresh canvas
-    
+
     /**
-     * Constructor for objects of class Maze
+     * Constructor for objects of class Maze, with a fresh random seed.
      * @param size number of rooms in each row & col
      */
     public Maze(int size)
     {
-        // create the rooms in the maze
+        this(size, new SplittableRandom());
+    }
+
+    /**
+     * Constructor for objects of class Maze.
+     * The same seed always gives the same maze, the same one a Game with that seed plays in.
+     * @param size number of rooms in each row & col
+     * @param seed The game seed.
+     */
+    public Maze(int size, long seed)
+    {
+        this(size, new GameRandom(seed).getMazeRandom());
+    }
+
+    /**
+     * Constructor for objects of class Maze.
+     * @param size number of rooms in each row & col
+     * @param rng The random number stream used to generate the maze.
+     */
+    public Maze(int size, SplittableRandom rng)
+    {
+        // create the rooms in the maze, all of them with no exits
         this.size = size;
-        rooms = new Room[size+2][size+2];
-        visited = new boolean[size+2][size+2];
-
-        for(int i = 0; i < size+2; i++)
-            for(int j = 0; j < size+2; j++)
-                rooms[i][j] = new Room(i, j);
-
-        // making the boundaries of the maze out of reach for the procedural maze generation algorithm
-        // to avoid IndexOutOfBounds exception
-        for (int x = 0; x < size+2; x++) {
-            visited[x][0] = true;
-            visited[x][size+1] = true;
-        }
-        
-        for (int y = 0; y < size+2; y++) {
-            visited[0][y] = true;
-            visited[size+1][y] = true;
-        }
+        this.rng = rng;
+        grid = new MazeGrid(size, size);
+        rooms = new Room[size+2][];
 
-        // initializing all rooms with no exits
-        try
-        {
-            for(int i = 0; i < size+2; i++)
-                for(int j = 0; j < size+2; j++) {
+        autoRefresh = false;
+        // generate the maze starting from upper left
+        generateMaze(1, 1);
+    }
 
-                    Room r = rooms[i][j];
+    /**
+     * Constructor for objects of class Maze, using the given generation algorithm.
+     * @param size number of rooms in each row & col
+     * @param generator The algorithm used to carve the maze.
+     * @param rng The random number stream used to generate the maze.
+     */
+    public Maze(int size, MazeGenerator generator, SplittableRandom rng)
+    {
+        this(generate(size, generator, rng));
+        this.rng = rng;
+    }
 
-                    r.setExits(null, null, null, null);
+    /**
+     * Constructor for objects of class Maze, wrapping a grid that has already been generated,
+     * for example by EllerMazeGenerator, or opened from a file with MazeBinaryFile.open,
+     * in which case getRoom reads straight from the mapped file. The grid must be square;
+     * the exit is opened on the east side of the bottom right room, on both sides of the wall, since
+     * a stored maze only keeps the inside one; except in a mapped file, which is never written to here:
+     * it serves the exit stored in its header.
+     * @param grid The grid holding the walls of the maze.
+     */
+    public Maze(MazeGrid grid)
+    {
+        if (grid.getRows() != grid.getCols())
+            throw new IllegalArgumentException("The maze must be square: " + grid.getRows() + " x " + grid.getCols());
 
-                }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        } finally {
-        }
+        this.size = grid.getRows();
+        this.grid = grid;
+        this.rng = new SplittableRandom();
+        rooms = new Room[size+2][];
 
         autoRefresh = false;
-        // generate the maze starting from upper left
-        generateMaze(1, 1);
+        // the final room is the special exit room (a stored maze may already have its inside)
+        if (!(grid instanceof MappedMazeGrid))
+            grid.carve(grid.index(size, size), MazeGrid.EAST);
+    }
+
+    /**
+     * Constructor for subclasses that keep their rooms somewhere else, like ChunkedMaze.
+     * They must override getRoom, getExits, addExit, getGrid and getSize,
+     * and getOccupancy(x, y) and getCell if they have no single grid.
+     */
+    protected Maze()
+    {
+        this.rng = new SplittableRandom();
+        autoRefresh = false;
     }
 
     /**
      * Procedural maze generation algorithm.
+     * Carves the maze depth-first from (x, y), see DepthFirstMazeGenerator.
+     * @param x The row of the room to start carving from.
+     * @param y The column of the room to start carving from.
      */
     public void generateMaze(int x, int y)
     {
-        // setting the visited value to true for the current room
-        visited[x][y] = true;
-
-        // while there is an unvisited neighbor
-        while (!visited[x][y+1] || !visited[x+1][y] || !visited[x][y-1] || !visited[x-1][y]) {
-            while (true) {
-                // choose a random neighbor by picking a random integer from 0 to 3
-                int r = randomNum(4);
-                if (r == 0 && !visited[x][y+1]) {
-                    rooms[x][y].setExits(rooms[x][y].getNorthExit(), rooms[x][y+1], rooms[x][y].getSouthExit(), rooms[x][y].getEastExit());
-                    rooms[x][y+1].setExits(rooms[x][y+1].getNorthExit(), rooms[x][y+1].getEastExit(), rooms[x][y+1].getSouthExit(), rooms[x][y]);
-                    generateMaze(x, y +1);
-                    break;
-                }
-                else if (r == 1 && !visited[x+1][y]) {
-                    rooms[x][y].setExits(rooms[x][y].getNorthExit(), rooms[x][y].getEastExit(), rooms[x+1][y], rooms[x][y].getWestExit());
-                    rooms[x+1][y].setExits(rooms[x][y], rooms[x+1][y].getEastExit(), rooms[x+1][y].getSouthExit(), rooms[x+1][y].getWestExit());
-                    generateMaze(x+1, y);
-                    break;
-                }
-                else if (r == 2 && !visited[x][y-1]) {
-                    rooms[x][y].setExits(rooms[x][y].getNorthExit(), rooms[x][y].getEastExit(), rooms[x][y].getSouthExit(), rooms[x][y-1]);
-                    rooms[x][y-1].setExits(rooms[x][y-1].getNorthExit(), rooms[x][y], rooms[x][y-1].getSouthExit(), rooms[x][y-1].getWestExit());
-                    generateMaze(x, y-1);
-                    break;
-                }
-                else if (r == 3 && !visited[x-1][y]) {
-                    rooms[x][y].setExits(rooms[x-1][y], rooms[x][y].getEastExit(), rooms[x][y].getSouthExit(), rooms[x][y].getWestExit());
-                    rooms[x-1][y].setExits(rooms[x-1][y].getNorthExit(), rooms[x-1][y].getEastExit(), rooms[x][y], rooms[x-1][y].getWestExit());
-                    generateMaze(x-1, y);
-                    break;
-                }
-            }
-        }
+        new DepthFirstMazeGenerator().carve(grid, x, y, rng);
 
         // the final room is the special exit room
-        Room exit = new Room(size,size+1);
-        rooms[size][size].setExits(rooms[size][size].getNorthExit(), exit, rooms[size][size].getSouthExit(), rooms[size][size].getWestExit());
-        exit.setExitRoom(true);
+        grid.carve(grid.index(size, size), MazeGrid.EAST);
+    }
+
+    /**
+     * @param size number of rooms in each row & col
+     * @param generator The algorithm used to carve the maze.
+     * @param rng The random number stream used to generate the maze.
+     * @return A new grid carved by the generator.
+     */
+    private static MazeGrid generate(int size, MazeGenerator generator, SplittableRandom rng)
+    {
+        MazeGrid grid = new MazeGrid(size, size);
+        generator.generate(grid, rng);
+        return grid;
+    }
+
+    /**
+     * Loads a maze stored in the maze.txt format.
+     * @param filename The name of the file.
+     * @return The stored maze.
+     * @throws IOException If the file cannot be read, is not in the maze.txt format, or the maze is not square.
+     */
+    public static Maze load(String filename) throws IOException
+    {
+        MazeGrid grid = MazeFile.read(filename);
+        if (grid.getRows() != grid.getCols())
+            throw new IOException(filename + ": the maze must be square, not " + grid.getRows() + " x " + grid.getCols());
+        return new Maze(grid);
+    }
+
+    /**
+     * Saves this maze in the maze.txt format.
+     * @param filename The name of the file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(String filename) throws IOException
+    {
+        MazeFile.write(getGrid(), filename);
     }
 
     /**
@@ -119,25 +176,177 @@ public class Maze
      */
     public Room getRoom(int x, int y)
     {
-        if (x >= 0 && x < rooms.length && y >= 0 && y < rooms[x].length)
-            return rooms[x][y];
-        else
+        if (x < 0 || x >= size+2 || y < 0 || y >= size+2)
             return null;
+
+        if (rooms[x] == null)
+            rooms[x] = new Room[size+2];
+
+        if (rooms[x][y] == null) {
+            rooms[x][y] = new Room(this, x, y);
+            rooms[x][y].setExitRoom(x == size && y == size+1);
+        }
+
+        return rooms[x][y];
     }
 
+    /**
+     * @param x The row of the room.
+     * @param y The column of the room.
+     * @return The exit bits of the room (see MazeGrid).
+     */
+    public int getExits(int x, int y) {return grid.getExits(grid.index(x, y));}
+
+    /**
+     * Opens an exit on one side of a room and tells the listeners. Used by the room views.
+     * @param x The row of the room.
+     * @param y The column of the room.
+     * @param direction One of MazeGrid.NORTH, SOUTH, EAST or WEST.
+     */
+    void addExit(int x, int y, int direction)
+    {
+        int cell = grid.index(x, y);
+        if (grid.hasExit(cell, direction))
+            return;
+        grid.addExit(cell, direction);
+        exitAdded(x, y, direction);
+    }
+
+    /**
+     * Counts an exit that has just been opened, adds it to the hash of the walls and tells the listeners.
+     * Called by addExit, including the ones of subclasses that keep their walls somewhere else.
+     * @param x The row of the room.
+     * @param y The column of the room.
+     * @param direction The side of the room that was opened.
+     */
+    void exitAdded(int x, int y, int direction)
+    {
+        modifications++;
+        if (wallsHashed)
+            wallHash ^= ZobristHash.key(x, y, ZobristHash.feature(direction));
+
+        if (listeners != null)
+            for (MazeListener listener : listeners)
+                listener.wallChanged(x, y, direction, true);
+    }
+
+    /**
+     * Adds or removes a feature of a room from the hash of the maze. Used by the room views
+     * whenever a player, evil circle, power-up or dot enters or leaves them.
+     * @param x The row of the room.
+     * @param y The column of the room.
+     * @param feature The feature, see ZobristHash.entity.
+     */
+    void toggleFeature(int x, int y, long feature)
+    {
+        contentHash ^= ZobristHash.key(x, y, feature);
+    }
+
+    /**
+     * Adds or removes several features of rooms at once from the hash of the maze, like the moves
+     * of a parallel EnemySystem tick, whose keys can be combined in any order.
+     * @param keys The exclusive or of the keys of the features (see ZobristHash.key).
+     */
+    void toggleKeys(long keys)
+    {
+        contentHash ^= keys;
+    }
+
+    /**
+     * The Zobrist hash of the walls of the maze and of everything in its rooms (see ZobristHash).
+     * The walls are hashed the first time this is called; after that the hash is updated with every
+     * exit opened through the rooms, so it is the same as hashing the whole state again.
+     * Walls changed straight in the grid are not seen, like with getModifications.
+     * @return The hash of the state of the maze.
+     * @throws UnsupportedOperationException For a ChunkedMaze, which has no single grid to hash.
+     */
+    public long getHash()
+    {
+        if (!wallsHashed) {
+            wallHash = ZobristHash.hashWalls(getGrid());
+            wallsHashed = true;
+        }
+        return wallHash ^ contentHash;
+    }
+
+    /**
+     * @param listener An object to be told about every change to the walls made through the rooms.
+     */
+    public void addMazeListener(MazeListener listener)
+    {
+        if (listeners == null)
+            listeners = new ArrayList<MazeListener>();
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener An object that no longer wants to be told about changes to the walls.
+     */
+    public void removeMazeListener(MazeListener listener)
+    {
+        if (listeners != null)
+            listeners.remove(listener);
+    }
+
+    /**
+     * Counts the changes made to the walls through the rooms, like breaking walls in the game,
+     * so that anything computed from the walls (see DistanceField) knows when it is out of date.
+     * @return modifications The number of exits opened since the maze was made.
+     */
+    public int getModifications() {return modifications;}
+
+    /**
+     * @param enemies The evil circles wandering in the maze. Set by EnemySystem.
+     */
+    void setEnemies(EnemySystem enemies) {this.enemies = enemies;}
+
+    /**
+     * @return enemies The evil circles wandering in the maze, or null if there are none.
+     */
+    public EnemySystem getEnemies() {return enemies;}
+
+    /**
+     * The players, evil circles, power-ups and dots in the rooms, read and changed by the room views.
+     * @return occupancy The index of what is in every room of the maze.
+     */
+    public OccupancyIndex getOccupancy()
+    {
+        if (occupancy == null)
+            occupancy = new OccupancyIndex(getGrid().getLength());
+        return occupancy;
+    }
+
+    /**
+     * The index holding what is in one room. Used by the room views, so that a maze keeping
+     * its rooms somewhere else, like ChunkedMaze, can keep one index for each part of them.
+     * @param x The row of the room.
+     * @param y The column of the room.
+     * @return The index holding the room, see getOccupancy.
+     */
+    OccupancyIndex getOccupancy(int x, int y) {return getOccupancy();}
+
+    /**
+     * @param x The row of the room.
+     * @param y The column of the room.
+     * @return The number of the room in the index returned by getOccupancy(x, y).
+     */
+    int getCell(int x, int y) {return grid.index(x, y);}
+
+    /**
+     * @return grid The compact grid holding the walls of the maze.
+     */
+    public MazeGrid getGrid() {return grid;}
+
     /**
      * @return size The size of the maze.
      */
     public int getSize() {return size;}
 
-    // random number generator
-    private static Random rng = new Random();
-
     /**
      * @param n The upper bound of the random number range.
-     * @return num A random number within [0, n).
+     * @return num A random number within [0, n), from this maze's own stream.
      */
-    public static int randomNum(int n)
+    public int randomNum(int n)
     {
         int num = rng.nextInt(n);
         return num;
@@ -0,0 +1,326 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.LongStream;
+
+/**
+ * Generates and checks large numbers of mazes in parallel, for offline validation.
+ * The mazes are split into ranges on a ForkJoinPool, halved until about 16 are left in each,
+ * and every maze gets the length of its solution from (1, 1) to the exit, its number of dead ends
+ * (rooms with a single exit), and the number of rooms that can be reached from (1, 1).
+ * A maze generated from a seed also gets the dots and power-ups a one player Game with that seed
+ * places in it (see Game.placeItems), and the number of them that cannot be reached from (1, 1);
+ * it is only solvable if the exit and every one of them can be reached. Mazes that are checked
+ * as they are have no seed, and so no items.
+ *
+ * Every worker thread keeps its own grid and MazeSolver, allocated the first time it works for
+ * the batch and reused for every maze after that, so solving allocates nothing and the threads
+ * share nothing but the result arrays, where each maze has its own slot.
+ * Generating from a seed allocates only what the generator needs (the streams of one GameRandom,
+ * and the stack of DepthFirstMazeGenerator), which is small next to the work of carving the maze.
+ *
+ * The maze of a seed is the one new Maze(size, seed) and a Game with that seed play in,
+ * when the generator is the default DepthFirstMazeGenerator.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class MazeBatch
+{
+    private static final int MAZES_PER_TASK = 16; // ranges are not split below this
+
+    private int size; // number of rooms in each row & col of the mazes generated from seeds
+    private MazeGenerator generator; // algorithm used to carve the mazes generated from seeds
+    private ForkJoinPool pool; // pool the mazes are spread over
+    private ThreadLocal<Worker> workers; // scratch space of each thread
+
+    /**
+     * Constructor for objects of class MazeBatch, carving depth-first on the common pool.
+     * @param size The number of rooms in each row & col of the mazes.
+     */
+    public MazeBatch(int size)
+    {
+        this(size, new DepthFirstMazeGenerator(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for objects of class MazeBatch.
+     * @param size The number of rooms in each row & col of the mazes.
+     * @param generator The algorithm used to carve the mazes; it must not keep state between calls.
+     * @param pool The pool the mazes are spread over.
+     */
+    public MazeBatch(int size, MazeGenerator generator, ForkJoinPool pool)
+    {
+        if (size < 2)
+            throw new IllegalArgumentException("Invalid maze size: " + size);
+
+        this.size = size;
+        this.generator = generator;
+        this.pool = pool;
+        workers = ThreadLocal.withInitial(Worker::new);
+    }
+
+    /**
+     * Generates and checks the mazes of consecutive seeds.
+     * @param firstSeed The seed of the first maze.
+     * @param count The number of mazes.
+     * @return The results, in seed order.
+     */
+    public Result solve(long firstSeed, int count)
+    {
+        return solve(LongStream.range(firstSeed, firstSeed + count));
+    }
+
+    /**
+     * Generates and checks the mazes of a stream of seeds.
+     * @param seeds The game seeds.
+     * @return The results, in the order of the stream.
+     */
+    public Result solve(LongStream seeds)
+    {
+        return solve(seeds.toArray());
+    }
+
+    /**
+     * Generates and checks the maze of every seed.
+     * @param seeds The game seeds.
+     * @return The results, in the order of the seeds.
+     */
+    public Result solve(long[] seeds)
+    {
+        Result result = new Result(seeds.length);
+        long start = System.nanoTime();
+        pool.invoke(new Solve(seeds, null, result, 0, seeds.length));
+        result.elapsed = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Checks mazes that have already been generated. The mazes are only read, never changed.
+     * @param mazes The mazes, which may have different sizes but not be ChunkedMazes.
+     * @return The results, in the order of the mazes.
+     */
+    public Result solve(Maze[] mazes)
+    {
+        Result result = new Result(mazes.length);
+        long start = System.nanoTime();
+        pool.invoke(new Solve(null, mazes, result, 0, mazes.length));
+        result.elapsed = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * @return size The number of rooms in each row & col of the mazes generated from seeds.
+     */
+    public int getSize() {return size;}
+
+    /**
+     * @return generator The algorithm used to carve the mazes generated from seeds.
+     */
+    public MazeGenerator getGenerator() {return generator;}
+
+    /**
+     * Checks a range of mazes, splitting it in halves until few enough are left.
+     */
+    private class Solve extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long[] seeds; // the seeds to generate from, or null
+        private Maze[] mazes; // the mazes to check, if there are no seeds
+        private Result result;
+        private int from, to; // range of mazes
+
+        public Solve(long[] seeds, Maze[] mazes, Result result, int from, int to)
+        {
+            this.seeds = seeds;
+            this.mazes = mazes;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > MAZES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Solve(seeds, mazes, result, from, middle),
+                          new Solve(seeds, mazes, result, middle, to));
+                return;
+            }
+
+            Worker worker = workers.get();
+            for (int i = from; i < to; i++) {
+                if (seeds != null)
+                    worker.generate(seeds[i]);
+                else
+                    worker.copy(mazes[i].getGrid());
+                worker.check(result, i);
+            }
+        }
+    }
+
+    /**
+     * The grid and solver of one thread, kept for as long as the thread lives.
+     */
+    private class Worker
+    {
+        MazeGrid grid;
+        MazeSolver solver;
+        int[] itemX = new int[Game.ITEMS], itemY = new int[Game.ITEMS]; // rooms of the items of the maze
+        boolean placed; // true if the maze in the grid has items
+
+        /**
+         * Makes sure the grid has the given size, replacing it and the solver if it has not.
+         * @param rows The number of rows of rooms.
+         * @param cols The number of columns of rooms.
+         */
+        void prepare(int rows, int cols)
+        {
+            if (grid == null || grid.getRows() != rows || grid.getCols() != cols) {
+                grid = new MazeGrid(rows, cols);
+                solver = new MazeSolver(grid);
+            }
+        }
+
+        /**
+         * Carves the maze of a seed into the grid, with its exit, and places the items of a game in it.
+         * @param seed The game seed.
+         */
+        void generate(long seed)
+        {
+            prepare(size, size);
+            grid.clear();
+            GameRandom random = new GameRandom(seed);
+            generator.generate(grid, random.getMazeRandom());
+            grid.carve(grid.index(size, size), MazeGrid.EAST);
+
+            // a game needs at least 3 x 3 rooms to place its evil circles and power-ups
+            placed = size >= 3;
+            if (placed)
+                Game.placeItems(random.getPlacementRandom(), size, itemX, itemY);
+        }
+
+        /**
+         * Copies the walls of a maze into the grid.
+         * @param source The grid of the maze.
+         */
+        void copy(MazeGrid source)
+        {
+            prepare(source.getRows(), source.getCols());
+            for (int cell = 0; cell < grid.getLength(); cell++)
+                grid.setExits(cell, source.getExits(cell));
+            placed = false;
+        }
+
+        /**
+         * Measures the maze in the grid.
+         * @param result The results of the batch.
+         * @param i The slot of the maze in the results.
+         */
+        void check(Result result, int i)
+        {
+            int rows = grid.getRows(), cols = grid.getCols();
+            int deadEnds = 0;
+            for (int x = 1; x <= rows; x++)
+                for (int y = 1; y <= cols; y++)
+                    if (Integer.bitCount(grid.getExits(grid.index(x, y))) == 1)
+                        deadEnds++;
+
+            // the exit room is in the boundary ring, east of the bottom right room
+            int start = grid.index(1, 1);
+            result.pathLength[i] = solver.distanceBFS(start, grid.index(rows, cols + 1));
+            result.deadEnds[i] = deadEnds;
+            result.reachable[i] = solver.countReachable(start);
+
+            // the dots and power-ups, but not the evil circles, which come to the player anyway
+            int unreachable = 0;
+            if (placed)
+                for (int k = 0; k < Game.ITEMS; k++)
+                    if ((k < Game.DOTS || k >= Game.DOTS + Game.EVIL_CIRCLES) && !solver.isReached(grid.index(itemX[k], itemY[k])))
+                        unreachable++;
+            result.unreachableItems[i] = unreachable;
+        }
+    }
+
+    /**
+     * What was found about every maze of a batch, and how long the batch took.
+     */
+    public static class Result
+    {
+        private int[] pathLength; // steps from (1, 1) to the exit room, -1 if there is no way out
+        private int[] deadEnds; // rooms with a single exit
+        private int[] reachable; // rooms that can be reached from (1, 1)
+        private int[] unreachableItems; // dots and power-ups that cannot be reached from (1, 1)
+        private long elapsed; // nanoseconds taken by the whole batch
+
+        /**
+         * Constructor for objects of class Result.
+         * @param count The number of mazes.
+         */
+        Result(int count)
+        {
+            pathLength = new int[count];
+            deadEnds = new int[count];
+            reachable = new int[count];
+            unreachableItems = new int[count];
+        }
+
+        /**
+         * @return The number of mazes in the batch.
+         */
+        public int getCount() {return pathLength.length;}
+
+        /**
+         * @param i The position of the maze in the batch.
+         * @return The number of steps from (1, 1) to the exit room, or -1 if there is no way out.
+         */
+        public int getPathLength(int i) {return pathLength[i];}
+
+        /**
+         * @param i The position of the maze in the batch.
+         * @return The number of rooms with a single exit.
+         */
+        public int getDeadEnds(int i) {return deadEnds[i];}
+
+        /**
+         * @param i The position of the maze in the batch.
+         * @return The number of rooms that can be reached from (1, 1), including it but not the exit room.
+         */
+        public int getReachableRooms(int i) {return reachable[i];}
+
+        /**
+         * @param i The position of the maze in the batch.
+         * @return The number of dots and power-ups placed in the maze that cannot be reached from (1, 1).
+         */
+        public int getUnreachableItems(int i) {return unreachableItems[i];}
+
+        /**
+         * @param i The position of the maze in the batch.
+         * @return True if the exit and every dot and power-up can be reached from (1, 1).
+         */
+        public boolean isSolvable(int i) {return pathLength[i] >= 0 && unreachableItems[i] == 0;}
+
+        /**
+         * @return The number of mazes whose exit, or one of whose dots or power-ups, cannot be reached from (1, 1).
+         */
+        public int getUnsolvable()
+        {
+            int count = 0;
+            for (int i = 0; i < pathLength.length; i++)
+                if (!isSolvable(i))
+                    count++;
+            return count;
+        }
+
+        /**
+         * @return The time taken by the whole batch, in nanoseconds.
+         */
+        public long getElapsedNanos() {return elapsed;}
+
+        /**
+         * @return The number of mazes generated and checked per second.
+         */
+        public double getMazesPerSecond() {return getCount() * 1e9 / Math.max(elapsed, 1);}
+    }
+}
\ No newline at end of file
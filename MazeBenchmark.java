@@ -0,0 +1,858 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+/**
+ * Headless benchmarks for the maze engine, run from the command line:
+ * java MazeBenchmark generators [size] [seed]
+ * java MazeBenchmark chunks [chunk size] [seed]
+ * java MazeBenchmark oracle [size] [seed]
+ * java MazeBenchmark solvers [size] [seed]
+ * java MazeBenchmark hierarchical [size] [seed]
+ * java MazeBenchmark repair [size] [seed]
+ * java MazeBenchmark batch [size] [seed]
+ * java MazeBenchmark external [size] [seed]
+ * java MazeBenchmark files [size] [seed]
+ * java MazeBenchmark zobrist [size] [seed]
+ * java MazeBenchmark enemies [size] [seed]
+ * java MazeBenchmark pursuit [size] [seed]
+ * java MazeBenchmark occupancy [size] [seed]
+ * java MazeBenchmark parallel [size] [seed]
+ * java MazeBenchmark cooperative [size] [seed]
+ * java -Djava.awt.headless=true MazeBenchmark overlay [size] [seed]
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class MazeBenchmark
+{
+    public static void main(String[] args)
+    {
+        String benchmark = args.length > 0 ? args[0] : "generators";
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        if (benchmark.equals("generators")) {
+            MazeGenerator[] generators = {
+                new DepthFirstMazeGenerator(),
+                new TiledMazeGenerator(256),
+                new KruskalMazeGenerator(),
+                new KruskalMazeGenerator(ForkJoinPool.commonPool()),
+                new WilsonMazeGenerator()
+            };
+
+            for (MazeGenerator generator : generators)
+                System.out.printf("%-28s %,15.0f cells/sec%n", generator.getName(), cellsPerSecond(generator, size, seed));
+            System.out.printf("%-28s %,15.0f cells/sec%n", "eller (streaming)", ellerCellsPerSecond(size, seed));
+        }
+        else if (benchmark.equals("chunks")) {
+            // travel far in a straight line through an endless maze, keeping a 5 x 5 window of chunks around the traveller
+            int chunkSize = args.length > 1 ? size : 64;
+            ChunkedMaze maze = new ChunkedMaze(seed, chunkSize, 25);
+            int distance = 2000 * chunkSize;
+
+            long start = System.nanoTime();
+            for (int y = 0; y < distance; y++)
+                for (int dx = -2 * chunkSize; dx <= 2 * chunkSize; dx += chunkSize)
+                    maze.getExits(dx, y);
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("%,d chunks generated, %,d in memory, %,.0f chunks/sec%n",
+                maze.getGeneratedChunks(), maze.getLoadedChunks(), maze.getGeneratedChunks() * 1e9 / Math.max(elapsed, 1));
+
+            // a chunk dropped and generated again has the same walls, including the ones opened through its rooms
+            ChunkedMaze world = new ChunkedMaze(seed, chunkSize, 9);
+            long untouched = ZobristHash.hashWalls(world.getChunkGrid(1, 1));
+            for (int x = 1; x < chunkSize - 1; x += 3) {
+                Room room = world.getRoom(x, x);
+                room.setExits(world.getRoom(x - 1, x), world.getRoom(x, x + 1), world.getRoom(x + 1, x), world.getRoom(x, x - 1));
+            }
+            long changed = ZobristHash.hashWalls(world.getChunkGrid(0, 0));
+            int modifications = world.getModifications();
+            for (int y = 10 * chunkSize; y < 30 * chunkSize; y += chunkSize)
+                world.getExits(0, y); // far enough for both chunks to be dropped
+            long generatedBefore = world.getGeneratedChunks();
+            boolean same = ZobristHash.hashWalls(world.getChunkGrid(1, 1)) == untouched
+                && ZobristHash.hashWalls(world.getChunkGrid(0, 0)) == changed
+                && world.getGeneratedChunks() == generatedBefore + 2 && modifications > 0;
+            System.out.printf("%-28s %,15d walls opened, %s%n", "dropped and generated again", modifications,
+                same ? "same walls" : "DIFFERENT");
+
+            // the chunk of a player and the ones nearest to it stay in memory while others come and go
+            world = new ChunkedMaze(seed, chunkSize, 9);
+            world.getRoom(-chunkSize / 2, -chunkSize / 2).setPersonInRoom(1, true);
+            world.getExits(0, 0);
+            for (int y = 10 * chunkSize; y < 30 * chunkSize; y += chunkSize)
+                world.getExits(0, y);
+            generatedBefore = world.getGeneratedChunks();
+            boolean kept = world.getRoom(-chunkSize / 2, -chunkSize / 2).isPersonInRoom(1) && world.getExits(0, 0) >= 0
+                && world.getGeneratedChunks() == generatedBefore && world.getLoadedChunks() == 9;
+            System.out.printf("%-28s %,15d chunks in memory, %s%n", "far from the player", world.getLoadedChunks(),
+                kept ? "player and neighbors kept" : "DROPPED");
+
+            // every border opens on both sides and the chunks around the origin make one connected maze
+            System.out.printf("%-28s %,15d rooms, %s%n", "chunks around the origin", 25 * chunkSize * chunkSize,
+                chunksJoin(new ChunkedMaze(seed, chunkSize, 25), 2) ? "all joined" : "NOT JOINED");
+        }
+        else if (benchmark.equals("oracle")) {
+            // pairwise distances in a perfect maze, from the tree index and from a search per pair
+            MazeGrid grid = new MazeGrid(size, size);
+            new DepthFirstMazeGenerator().generate(grid, new SplittableRandom(seed));
+
+            long start = System.nanoTime();
+            TreeDistanceOracle oracle = new TreeDistanceOracle(grid);
+            System.out.printf("%-28s %,15.1f ms%n", "index build", (System.nanoTime() - start) / 1e6);
+
+            SplittableRandom rng = new SplittableRandom(seed);
+            int[] rooms = new int[1 << 20];
+            for (int i = 0; i < rooms.length; i++)
+                rooms[i] = grid.index(1 + rng.nextInt(size), 1 + rng.nextInt(size));
+
+            long total = 0; // summed so the queries are not optimized away
+            start = System.nanoTime();
+            for (int i = 0; i < rooms.length; i += 2)
+                total += oracle.distance(rooms[i], rooms[i + 1]);
+            System.out.printf("%-28s %,15.0f queries/sec%n", "tree oracle", rooms.length / 2 * 1e9 / (System.nanoTime() - start));
+
+            MazeSolver solver = new MazeSolver(grid);
+            start = System.nanoTime();
+            for (int i = 0; i < 200; i += 2)
+                total += solver.solveBFS(rooms[i], rooms[i + 1]).length;
+            System.out.printf("%-28s %,15.0f queries/sec%n", "breadth-first search", 100 * 1e9 / (System.nanoTime() - start));
+
+            // the only path between two rooms of a perfect maze, from the tree index and from a search
+            boolean same = true;
+            for (int i = 0; i < 200 && same; i += 2)
+                same = oracle.distance(rooms[i], rooms[i + 1]) == solver.distanceBFS(rooms[i], rooms[i + 1])
+                    && Arrays.equals(oracle.pathBetween(rooms[i], rooms[i + 1]), solver.solveBFS(rooms[i], rooms[i + 1]));
+            System.out.printf("%-28s %,15d pairs, %s%n", "tree oracle against search", 100,
+                same ? "same distances and paths" : "DIFFERENT");
+        }
+        else if (benchmark.equals("solvers")) {
+            // from the top left room to the bottom right one, each search run twice to warm up
+            MazeGrid grid = new MazeGrid(size, size);
+            new DepthFirstMazeGenerator().generate(grid, new SplittableRandom(seed));
+            MazeSolver solver = new MazeSolver(grid);
+            int start = grid.index(1, 1), goal = grid.index(size, size);
+
+            String[] names = {"breadth-first", "A*", "depth-first (game order)", "bidirectional"};
+            for (int i = 0; i < names.length; i++) {
+                int[] path = null;
+                long elapsed = 0;
+                for (int run = 0; run < 2; run++) {
+                    long before = System.nanoTime();
+                    if (i == 0) path = solver.solveBFS(start, goal);
+                    else if (i == 1) path = solver.solveAStar(start, goal);
+                    else if (i == 2) path = solver.solveDFS(start, goal);
+                    else path = solver.solveBidirectional(start, goal);
+                    elapsed = System.nanoTime() - before;
+                }
+                System.out.printf("%-28s %,12d nodes %,10.1f ms  path %,d%n", names[i], solver.getNodesExpanded(), elapsed / 1e6, path.length);
+            }
+
+            // the nearest of 100 dots, in one pass and with one search per dot
+            SplittableRandom rng = new SplittableRandom(seed);
+            int[] dots = new int[100];
+            for (int i = 0; i < dots.length; i++)
+                dots[i] = grid.index(1 + rng.nextInt(size), 1 + rng.nextInt(size));
+
+            long before = System.nanoTime();
+            int[] nearest = solver.solveNearest(start, dots);
+            System.out.printf("%-28s %,12d nodes %,10.1f ms  path %,d%n", "nearest of 100 dots", solver.getNodesExpanded(), (System.nanoTime() - before) / 1e6, nearest.length);
+
+            long nodes = 0;
+            before = System.nanoTime();
+            for (int dot : dots) {
+                solver.solveBFS(start, dot);
+                nodes += solver.getNodesExpanded();
+            }
+            System.out.printf("%-28s %,12d nodes %,10.1f ms%n", "100 searches, one per dot", nodes, (System.nanoTime() - before) / 1e6);
+        }
+        else if (benchmark.equals("hierarchical")) {
+            // long queries across a maze with loops, like one where walls have been broken
+            MazeGrid grid = new MazeGrid(size, size);
+            new WilsonMazeGenerator().generate(grid, new SplittableRandom(seed));
+            SplittableRandom rng = new SplittableRandom(seed);
+            for (int i = 0; i < size * size / 50; i++)
+                grid.carve(grid.index(1 + rng.nextInt(size - 1), 1 + rng.nextInt(size - 1)), rng.nextBoolean() ? MazeGrid.EAST : MazeGrid.SOUTH);
+
+            long start = System.nanoTime();
+            HierarchicalPathfinder hierarchical = new HierarchicalPathfinder(grid, 128);
+            System.out.printf("%-28s %,15.1f ms, %,d nodes%n", "hierarchical build", (System.nanoTime() - start) / 1e6, hierarchical.getNodeCount());
+
+            int[] rooms = new int[20];
+            for (int i = 0; i < rooms.length; i += 2) {
+                rooms[i] = grid.index(1 + rng.nextInt(size / 8), 1 + rng.nextInt(size / 8));
+                rooms[i + 1] = grid.index(size - rng.nextInt(size / 8), size - rng.nextInt(size / 8));
+            }
+
+            MazeSolver solver = new MazeSolver(grid);
+            long flat = 0, distance = 0, path = 0, total = 0;
+            for (int run = 0; run < 2; run++) {
+                flat = distance = path = 0;
+                for (int i = 0; i < rooms.length; i += 2) {
+                    long before = System.nanoTime();
+                    int steps = solver.solveAStar(rooms[i], rooms[i + 1]).length - 1;
+                    flat += System.nanoTime() - before;
+
+                    before = System.nanoTime();
+                    if (hierarchical.distance(rooms[i], rooms[i + 1]) != steps)
+                        throw new IllegalStateException("The hierarchical distance differs from A*");
+                    distance += System.nanoTime() - before;
+
+                    before = System.nanoTime();
+                    total += hierarchical.findPath(rooms[i], rooms[i + 1]).length;
+                    path += System.nanoTime() - before;
+                }
+            }
+            int queries = rooms.length / 2;
+            System.out.printf("%-28s %,15.2f ms/query%n", "flat A*", flat / 1e6 / queries);
+            System.out.printf("%-28s %,15.2f ms/query  (%.1fx)%n", "hierarchical distance", distance / 1e6 / queries, (double) flat / distance);
+            System.out.printf("%-28s %,15.2f ms/query  (%.1fx)%n", "hierarchical path", path / 1e6 / queries, (double) flat / path);
+        }
+        else if (benchmark.equals("repair")) {
+            // breaking walls through the rooms, like Game.breakWalls, with a distance field to the exit listening
+            Maze maze = new Maze(size, seed);
+            new DistanceField(maze).dispose(); // warm up
+            long before = System.nanoTime();
+            DistanceField field = new DistanceField(maze);
+            long full = System.nanoTime() - before;
+
+            SplittableRandom rng = new SplittableRandom(seed);
+            int broken = 1000;
+            before = System.nanoTime();
+            for (int i = 0; i < broken; i++) {
+                Room room = maze.getRoom(1 + rng.nextInt(size - 1), 1 + rng.nextInt(size - 1));
+                Room east = maze.getRoom(room.getX(), room.getY() + 1);
+                room.setExits(null, east, null, null);
+                east.setExits(null, null, null, room);
+            }
+            long repair = System.nanoTime() - before;
+
+            // the same walls broken again, checking the repaired field against a new search after every one
+            maze = new Maze(size, seed);
+            field = new DistanceField(maze);
+            rng = new SplittableRandom(seed);
+            int checked = Math.min(broken, 100);
+            boolean same = true;
+            for (int i = 0; i < checked && same; i++) {
+                Room room = maze.getRoom(1 + rng.nextInt(size - 1), 1 + rng.nextInt(size - 1));
+                Room east = maze.getRoom(room.getX(), room.getY() + 1);
+                room.setExits(null, east, null, null);
+                east.setExits(null, null, null, room);
+
+                DistanceField fresh = new DistanceField(maze);
+                fresh.dispose();
+                for (int x = 1; x <= size && same; x++)
+                    for (int y = 1; y <= size; y++)
+                        if (field.getDistance(x, y) != fresh.getDistance(x, y) || field.getDirection(x, y) != fresh.getDirection(x, y))
+                            same = false;
+            }
+
+            System.out.printf("%-28s %,15.3f ms%n", "full search", full / 1e6);
+            System.out.printf("%-28s %,15.3f ms/wall, %,d rooms/wall, %d full searches%n", "incremental repair",
+                repair / 1e6 / broken, field.getRepairedRooms() / broken, field.getComputations() - 1);
+            System.out.printf("%-28s %,15d walls, %s%n", "repaired against searched", checked,
+                same && field.getComputations() == 1 ? "same distances and directions" : "DIFFERENT");
+        }
+        else if (benchmark.equals("batch")) {
+            // many game-sized mazes generated and solved on pools of more and more threads
+            int mazeSize = args.length > 1 ? size : 25;
+            int count = 20000;
+            int cores = Runtime.getRuntime().availableProcessors();
+            double single = 0;
+            for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                MazeBatch batch = new MazeBatch(mazeSize, new DepthFirstMazeGenerator(), pool);
+                batch.solve(seed, count); // warm up
+                MazeBatch.Result result = batch.solve(seed, count);
+                pool.shutdown();
+
+                if (threads == 1)
+                    single = result.getMazesPerSecond();
+                System.out.printf("%-28s %,15.0f mazes/sec  (%.1fx, %d unsolvable)%n", threads + " threads",
+                    result.getMazesPerSecond(), result.getMazesPerSecond() / single, result.getUnsolvable());
+                if (threads == cores)
+                    break;
+            }
+        }
+        else if (benchmark.equals("external")) {
+            // the external search on a mapped file with a small budget, checked against the in-memory searches
+            try {
+                for (int loops = 0; loops <= 1; loops++) {
+                    long start = System.nanoTime();
+                    boolean same = matchesInMemory(size, seed, loops == 1);
+                    System.out.printf("%-28s %s (%.1f s)%n", loops == 0 ? "perfect maze" : "maze with loops",
+                        same ? "same results as in memory" : "DIFFERENT RESULTS", (System.nanoTime() - start) / 1e9);
+                }
+            }
+            catch (IOException ex) {
+                System.out.println("External search failed: " + ex.getMessage());
+            }
+        }
+        else if (benchmark.equals("files")) {
+            // mazes saved in the maze.txt format and loaded back, with the walls, the exit and the hash unchanged
+            try {
+                File dir = Files.createTempDirectory("maze-files").toFile();
+                for (int mazeSize : new int[] {2, 25, size}) {
+                    Maze maze = new Maze(mazeSize, seed);
+                    long hash = maze.getHash();
+                    File file = new File(dir, "maze" + mazeSize + ".txt");
+
+                    long start = System.nanoTime();
+                    maze.save(file.getPath());
+                    long saved = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    Maze loaded = Maze.load(file.getPath());
+                    long read = System.nanoTime() - start;
+
+                    boolean same = ZobristHash.hashWalls(loaded.getGrid()) == ZobristHash.hashWalls(maze.getGrid())
+                        && loaded.getHash() == hash && loaded.getGrid().isPerfect()
+                        && loaded.getExits(mazeSize, mazeSize + 1) == MazeGrid.WEST
+                        && (loaded.getExits(mazeSize, mazeSize) & MazeGrid.EAST) != 0;
+                    System.out.printf("%-28s %,15.1f ms saved, %,.1f ms loaded, %s%n", mazeSize + " x " + mazeSize,
+                        saved / 1e6, read / 1e6, same ? "same maze" : "DIFFERENT");
+                    file.delete();
+                }
+                dir.delete();
+
+                // the maze shipped with the game, loaded, saved and loaded again
+                if (new File("maze.txt").exists()) {
+                    Maze shipped = Maze.load("maze.txt");
+                    File file = File.createTempFile("maze", ".txt");
+                    shipped.save(file.getPath());
+                    Maze loaded = Maze.load(file.getPath());
+                    file.delete();
+                    System.out.printf("%-28s %,15d rooms, %s%n", "maze.txt", shipped.getSize() * shipped.getSize(),
+                        loaded.getHash() == shipped.getHash() && loaded.getExits(loaded.getSize(), loaded.getSize() + 1) == MazeGrid.WEST
+                            ? "same maze" : "DIFFERENT");
+                }
+            }
+            catch (IOException ex) {
+                System.out.println("Saving or loading failed: " + ex.getMessage());
+            }
+        }
+        else if (benchmark.equals("zobrist")) {
+            // the hash kept up to date while walls are broken and players move, against hashing everything again
+            Maze maze = new Maze(size, seed);
+            long before = System.nanoTime();
+            maze.getHash();
+            long full = System.nanoTime() - before;
+
+            SplittableRandom rng = new SplittableRandom(seed);
+            int changes = 100000;
+            before = System.nanoTime();
+            for (int i = 0; i < changes; i++) {
+                Room room = maze.getRoom(1 + rng.nextInt(size - 1), 1 + rng.nextInt(size - 1));
+                room.setPersonInRoom(1, !room.isPersonInRoom(1));
+                room.setExits(null, maze.getRoom(room.getX(), room.getY() + 1), null, null);
+            }
+            long incremental = System.nanoTime() - before;
+            // take every player out again, so only the walls are left in the hash
+            for (int x = 1; x <= size; x++)
+                for (int y = 1; y <= size; y++)
+                    maze.getRoom(x, y).setPersonInRoom(1, false);
+            boolean same = maze.getHash() == ZobristHash.hashWalls(maze.getGrid());
+
+            System.out.printf("%-28s %,15.3f ms%n", "full hash", full / 1e6);
+            System.out.printf("%-28s %,15.1f ns/change  (%s)%n", "incremental update", (double) incremental / (2 * changes),
+                same ? "same as a full hash" : "DIFFERENT FROM A FULL HASH");
+
+            // a solve cache shared by all the threads, asked for the same game mazes over and over
+            TranspositionTable<int[]> cache = new TranspositionTable<int[]>(1 << 12);
+            int requests = 20000;
+            before = System.nanoTime();
+            LongStream.range(0, requests).parallel().forEach(i -> {
+                Maze game = new Maze(25, seed + i % 500);
+                long key = game.getHash();
+                if (cache.get(key) == null) {
+                    MazeGrid grid = game.getGrid();
+                    cache.put(key, new MazeSolver(grid).solveBFS(grid.index(1, 1), grid.index(25, 26)));
+                }
+            });
+            System.out.printf("%-28s %,15.0f requests/sec, %d%% hits%n", "solve cache", requests * 1e9 / (System.nanoTime() - before),
+                cache.getHits() * 100 / requests);
+        }
+        else if (benchmark.equals("enemies")) {
+            // thousands of evil circles wandering through a maze with some loops
+            int mazeSize = args.length > 1 ? size : 200;
+            int enemies = 5000;
+            Maze maze = new Maze(mazeSize, seed);
+            MazeGrid grid = maze.getGrid();
+            SplittableRandom rng = new SplittableRandom(seed);
+            for (int i = 0; i < mazeSize * mazeSize / 20; i++)
+                grid.carve(grid.index(1 + rng.nextInt(mazeSize - 1), 1 + rng.nextInt(mazeSize - 1)), rng.nextBoolean() ? MazeGrid.EAST : MazeGrid.SOUTH);
+
+            EnemySystem system = new EnemySystem(maze, enemies);
+            for (int i = 0; i < enemies; i++)
+                system.add(1 + rng.nextInt(mazeSize), 1 + rng.nextInt(mazeSize));
+
+            int ticks = 2000;
+            for (int i = 0; i < ticks; i++) // warm up
+                system.tick(rng);
+            long before = System.nanoTime();
+            for (int i = 0; i < ticks; i++)
+                system.tick(rng);
+            long elapsed = System.nanoTime() - before;
+
+            System.out.printf("%-28s %,15.3f ms/tick  (%,d enemies, %d x %d)%n", "enemy tick", elapsed / 1e6 / ticks, enemies, mazeSize, mazeSize);
+        }
+        else if (benchmark.equals("pursuit")) {
+            // evil circles chasing a player who wanders through the maze, the way being searched again on every move
+            int mazeSize = args.length > 1 ? size : 200;
+            int ticks = 2000;
+            for (int enemies = 1000; enemies <= 64000; enemies *= 4) {
+                Maze maze = new Maze(mazeSize, seed);
+                MazeGrid grid = maze.getGrid();
+                SplittableRandom rng = new SplittableRandom(seed);
+                int player = grid.index(1 + rng.nextInt(mazeSize), 1 + rng.nextInt(mazeSize));
+                DistanceField way = new DistanceField(maze, grid.getX(player), grid.getY(player));
+                EnemySystem system = new EnemySystem(maze, enemies);
+                system.setPursuit(0.5, way);
+                for (int i = 0; i < enemies; i++)
+                    system.add(1 + rng.nextInt(mazeSize), 1 + rng.nextInt(mazeSize));
+
+                int searches = way.getComputations();
+                long before = System.nanoTime();
+                for (int i = 0; i < ticks; i++) {
+                    if (i % 8 == 0) { // the player moves every eighth tick, when it can
+                        int direction = 1 << rng.nextInt(4);
+                        int next = grid.neighbor(player, direction);
+                        if (grid.hasExit(player, direction) && !grid.isBoundary(next)) {
+                            player = next;
+                            way.setSource(grid.getX(player), grid.getY(player));
+                        }
+                    }
+                    system.tick(rng);
+                }
+                long elapsed = System.nanoTime() - before;
+                System.out.printf("%-28s %,15.3f ms/tick  (%,d enemies, %,d searches, %d x %d)%n", "pursuit tick",
+                    elapsed / 1e6 / ticks, enemies, way.getComputations() - searches, mazeSize, mazeSize);
+            }
+
+            // enemies that always chase a player who stays put all catch up, each in as many ticks as its distance
+            Maze maze = new Maze(mazeSize, seed);
+            DistanceField way = new DistanceField(maze, mazeSize / 2, mazeSize / 2);
+            EnemySystem system = new EnemySystem(maze, 1000);
+            system.setPursuit(1, way);
+            SplittableRandom rng = new SplittableRandom(seed);
+            int farthest = 0;
+            for (int i = 0; i < 1000; i++) {
+                int x = 1 + rng.nextInt(mazeSize), y = 1 + rng.nextInt(mazeSize);
+                farthest = Math.max(farthest, way.getDistance(x, y));
+                system.add(x, y);
+            }
+            for (int i = 0; i < farthest; i++)
+                system.tick(rng);
+            System.out.printf("%-28s %,15d of 1,000 after %,d ticks%n", "caught", system.getOccupants(mazeSize / 2, mazeSize / 2), farthest);
+        }
+        else if (benchmark.equals("occupancy")) {
+            // entities of 8 kinds added, moved and removed at random, checked against a count for every kind and room
+            int mazeSize = args.length > 1 ? size : 200;
+            int cells = new MazeGrid(mazeSize, mazeSize).getLength();
+            int kinds = 8, operations = 1 << 20;
+            OccupancyIndex index = new OccupancyIndex(cells);
+            int[][] counts = new int[kinds][cells];
+            int[] ids = new int[1 << 14];
+            int live = 0;
+            SplittableRandom rng = new SplittableRandom(seed);
+            boolean same = true;
+
+            long before = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                int operation = rng.nextInt(4), cell = rng.nextInt(cells); // adding twice as likely, up to 16k entities
+                if (live < ids.length && (operation >= 2 || live == 0)) {
+                    int kind = rng.nextInt(kinds);
+                    ids[live++] = index.add(kind, i, cell);
+                    counts[kind][cell]++;
+                }
+                else {
+                    int j = rng.nextInt(live), id = ids[j];
+                    counts[index.getKind(id)][index.getCell(id)]--;
+                    if (operation == 1) {
+                        index.move(id, cell);
+                        counts[index.getKind(id)][cell]++;
+                    }
+                    else {
+                        index.remove(id);
+                        ids[j] = ids[--live];
+                    }
+                }
+                int kind = rng.nextInt(kinds);
+                same &= index.has(kind, cell) == (counts[kind][cell] > 0);
+            }
+            long elapsed = System.nanoTime() - before;
+
+            for (int kind = 0; kind < kinds; kind++)
+                for (int cell = 0; cell < cells; cell++)
+                    same &= index.count(kind, cell) == counts[kind][cell];
+            int overlaps = 0, expected = 0;
+            for (int cell = index.nextOverlap(0, 0b110, 0); cell != OccupancyIndex.NONE; cell = index.nextOverlap(0, 0b110, cell + 1))
+                overlaps++;
+            for (int cell = 0; cell < cells; cell++)
+                if (counts[0][cell] > 0 && (counts[1][cell] > 0 || counts[2][cell] > 0))
+                    expected++;
+
+            System.out.printf("%-28s %,15.0f operations/sec, %,d entities, %,d overlaps, %s%n", "occupancy index",
+                operations * 1e9 / elapsed, live, overlaps, same && overlaps == expected ? "same as counting" : "DIFFERENT");
+        }
+        else if (benchmark.equals("parallel")) {
+            // tens of thousands of enemies, half of them chasing, ticked on pools of 1 to 8 threads and on the calling thread
+            int mazeSize = args.length > 1 ? size : 1000;
+            int enemies = 50000, ticks = 200;
+            long expected = 0;
+            for (int threads = 0; threads <= 8; threads = threads == 0 ? 1 : threads * 2) {
+                Maze maze = new Maze(mazeSize, seed);
+                MazeGrid grid = maze.getGrid();
+                ForkJoinPool pool = threads == 0 ? null : new ForkJoinPool(threads);
+                EnemySystem system = new EnemySystem(maze, enemies, pool);
+                system.setPursuit(0.5, new DistanceField(maze, mazeSize / 2, mazeSize / 2));
+                SplittableRandom rng = new SplittableRandom(seed);
+                for (int i = 0; i < enemies; i++)
+                    system.add(1 + rng.nextInt(mazeSize), 1 + rng.nextInt(mazeSize));
+
+                long before = System.nanoTime();
+                for (int i = 0; i < ticks; i++)
+                    system.tick(rng.nextLong());
+                long elapsed = System.nanoTime() - before;
+                if (pool != null)
+                    pool.shutdown();
+
+                // the rooms of all the enemies, the state of the maze and the rooms in its index must not depend on the threads
+                long state = maze.getHash();
+                for (int i = 0; i < enemies; i++) {
+                    state = state * 31 + system.getCell(i);
+                    if (!maze.getOccupancy().has(OccupancyIndex.EVIL, system.getCell(i)))
+                        state = 0;
+                }
+                if (threads == 0)
+                    expected = state;
+                System.out.printf("%-28s %,15.3f ms/tick  (%,d enemies, %d x %d), %s%n", threads == 0 ? "calling thread" : threads + " threads",
+                    elapsed / 1e6 / ticks, enemies, mazeSize, mazeSize, state == expected ? "same rooms" : "DIFFERENT");
+            }
+        }
+        else if (benchmark.equals("cooperative")) {
+            // enemies chasing a wandering player through a maze with loops, with and without planning around each other
+            int mazeSize = args.length > 1 ? size : 100;
+            int ticks = 600; // 10 seconds at 60 Hz
+            for (int enemies = 1000; enemies <= 8000; enemies *= 2) {
+                for (int horizon = 0; horizon <= 8; horizon += 4) {
+                    if (enemies > 1000 && horizon != 4)
+                        continue; // only the default horizon for the larger numbers
+                    Maze maze = new Maze(mazeSize, seed);
+                    MazeGrid grid = maze.getGrid();
+                    SplittableRandom rng = new SplittableRandom(seed);
+                    for (int i = 0; i < mazeSize * mazeSize / 20; i++)
+                        grid.carve(grid.index(1 + rng.nextInt(mazeSize - 1), 1 + rng.nextInt(mazeSize - 1)), rng.nextBoolean() ? MazeGrid.EAST : MazeGrid.SOUTH);
+                    int player = grid.index(mazeSize / 2, mazeSize / 2);
+                    DistanceField way = new DistanceField(maze, mazeSize / 2, mazeSize / 2);
+                    EnemySystem system = new EnemySystem(maze, enemies);
+                    system.setPursuit(0.9, way);
+                    system.setCooperation(horizon);
+                    for (int i = 0; i < enemies; i++)
+                        system.add(1 + rng.nextInt(mazeSize), 1 + rng.nextInt(mazeSize));
+
+                    long crowded = 0, elapsed = 0;
+                    for (int i = 0; i < ticks; i++) {
+                        if (i % 8 == 0) { // the player moves every eighth tick, when it can
+                            int direction = 1 << rng.nextInt(4);
+                            int next = grid.neighbor(player, direction);
+                            if (grid.hasExit(player, direction) && !grid.isBoundary(next)) {
+                                player = next;
+                                way.setSource(grid.getX(player), grid.getY(player));
+                            }
+                        }
+                        long before = System.nanoTime();
+                        system.tick(rng.nextLong());
+                        elapsed += System.nanoTime() - before;
+
+                        // enemies sharing a room with another one, but not the room of the player
+                        if (i >= ticks / 2)
+                            for (int id = 0; id < enemies; id++)
+                                if (system.getCell(id) != player && system.getOccupants(grid.getX(system.getCell(id)), grid.getY(system.getCell(id))) > 1)
+                                    crowded++;
+                    }
+                    double perTick = elapsed / 1e6 / ticks;
+                    System.out.printf("%-28s %,15.3f ms/tick  (%,d enemies, %.1f%% of a 60 Hz frame, %.1f%% sharing a room)%n",
+                        horizon == 0 ? "no cooperation" : "horizon " + horizon, perTick, enemies, perTick / (1000.0 / 60) * 100,
+                        crowded * 100.0 / (ticks / 2) / enemies);
+                }
+            }
+            System.out.printf("%-28s %,15d operations, %s%n", "reservations", 2000000,
+                reservationsMatchHashMap(seed, 2000000) ? "same as a HashMap" : "DIFFERENT");
+        }
+        else if (benchmark.equals("overlay")) {
+            // the trail of the solver must show over the rooms the player has walked through, drawn on a canvas with no window
+            int mazeSize = args.length > 1 ? size : 25;
+            Canvas canvas = Canvas.useOffscreenCanvas();
+            Maze maze = new Maze(mazeSize, seed);
+            MazeGrid grid = maze.getGrid();
+            Renderer renderer = new Renderer(mazeSize + 2, new SplittableRandom(seed));
+            renderer.renderMaze(maze);
+
+            // walk the player along the way out, as Game does, leaving a white square in every room
+            int[] path = new MazeSolver(grid).solveBFS(grid.index(1, 1), grid.index(mazeSize, mazeSize));
+            for (int i = 0; i < path.length; i++) {
+                Room room = maze.getRoom(grid.getX(path[i]), grid.getY(path[i]));
+                if (i > 0)
+                    maze.getRoom(grid.getX(path[i - 1]), grid.getY(path[i - 1])).setPersonInRoom(1, false);
+                room.setPersonInRoom(1, true);
+                renderer.renderRoom(room);
+            }
+            maze.getRoom(mazeSize, mazeSize).setPersonInRoom(1, false);
+            renderer.renderRoom(maze.getRoom(mazeSize, mazeSize));
+
+            int[] trace = new MazeSolver(grid).traceDFS(grid.index(1, 1), grid.index(mazeSize, mazeSize));
+            new SolverAnimator(canvas, grid, 1000, 1000).play(trace);
+
+            // the middle of the circle of every room on the way out must be yellow
+            BufferedImage image = (BufferedImage) canvas.getImage();
+            int roomSize = Canvas.getSize() / (mazeSize + 2);
+            int hidden = 0;
+            for (int cell : path) {
+                int xLoc = (int)(roomSize/2 + grid.getY(cell) * roomSize + 0.22*roomSize) + (int)(roomSize/1.5) / 2;
+                int yLoc = (int)(roomSize/2 + grid.getX(cell) * roomSize + 0.22*roomSize) + (int)(roomSize/1.5) / 2;
+                if ((image.getRGB(xLoc, yLoc) & 0xFFFFFF) != 0xFFE600)
+                    hidden++;
+            }
+            System.out.printf("%-28s %,15d rooms on the way out, %s%n", "trail after the player", path.length,
+                hidden == 0 ? "visible" : hidden + " HIDDEN");
+        }
+        else {
+            System.out.println("Unknown benchmark: " + benchmark);
+        }
+    }
+
+    /**
+     * Streams mazes of several shapes and seeds from EllerMazeGenerator into a MazeGrid, row by row
+     * through MazeGrid.acceptRow, checking that each one is perfect, then times one of the given size.
+     * @param size The number of rooms in each row & col of the timed maze.
+     * @param seed The seed of the timed maze.
+     * @return The number of rooms generated every second.
+     * @throws IllegalStateException If a maze is not perfect.
+     */
+    public static double ellerCellsPerSecond(int size, long seed)
+    {
+        int[][] shapes = {{1, 1}, {1, 50}, {50, 1}, {2, 2}, {7, 31}, {31, 7}, {100, 100}};
+        try {
+            for (int[] shape : shapes) {
+                for (long s = seed; s < seed + 10; s++) {
+                    MazeGrid grid = new MazeGrid(shape[0], shape[1]);
+                    new EllerMazeGenerator(shape[0], shape[1], new SplittableRandom(s)).generate(grid);
+                    if (!grid.isPerfect())
+                        throw new IllegalStateException("eller did not produce a perfect " + shape[0] + " x " + shape[1] + " maze from seed " + s);
+                }
+            }
+
+            MazeGrid grid = new MazeGrid(size, size);
+            long start = System.nanoTime();
+            new EllerMazeGenerator(size, size, new SplittableRandom(seed)).generate(grid);
+            long elapsed = System.nanoTime() - start;
+            if (!grid.isPerfect())
+                throw new IllegalStateException("eller did not produce a perfect maze");
+            return (double) size * size * 1e9 / Math.max(elapsed, 1);
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("A MazeGrid cannot fail to accept a row", ex);
+        }
+    }
+
+    /**
+     * Checks that the chunks of an endless maze around the origin join into one maze: every exit leading
+     * to another room of them is matched by an exit back, and a search from one room reaches all of them.
+     * @param maze The endless maze, holding at least (2 * radius + 1)^2 chunks.
+     * @param radius The number of chunks on each side of the chunk of the origin.
+     * @return True if the chunks join.
+     */
+    public static boolean chunksJoin(ChunkedMaze maze, int radius)
+    {
+        int chunkSize = maze.getChunkSize();
+        int min = -radius * chunkSize, side = (2 * radius + 1) * chunkSize;
+        boolean[] reached = new boolean[side * side];
+        int[] queue = new int[side * side];
+        int head = 0, tail = 0;
+        queue[tail++] = 0;
+        reached[0] = true;
+
+        while (head < tail) {
+            int room = queue[head++];
+            int x = min + room / side, y = min + room % side;
+            int exits = maze.getExits(x, y);
+            for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1) {
+                int nx = x + (direction == MazeGrid.NORTH ? -1 : direction == MazeGrid.SOUTH ? 1 : 0);
+                int ny = y + (direction == MazeGrid.WEST ? -1 : direction == MazeGrid.EAST ? 1 : 0);
+                if (nx < min || nx >= min + side || ny < min || ny >= min + side)
+                    continue;
+                boolean back = (maze.getExits(nx, ny) & MazeGrid.opposite(direction)) != 0;
+                if (((exits & direction) != 0) != back)
+                    return false;
+                int next = (nx - min) * side + (ny - min);
+                if (back && !reached[next]) {
+                    reached[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return tail == side * side;
+    }
+
+    /**
+     * Makes random claims, releases and lookups on a small number of rooms and ticks, so that
+     * claims collide and releases move others back, on a ReservationTable and on a HashMap,
+     * comparing every answer, clearing both now and then.
+     * @param seed The seed of the operations.
+     * @param operations The number of operations.
+     * @return True if the table always answered like the HashMap.
+     */
+    public static boolean reservationsMatchHashMap(long seed, int operations)
+    {
+        ReservationTable table = new ReservationTable(8);
+        HashMap<Long, Integer> expected = new HashMap<Long, Integer>();
+        SplittableRandom rng = new SplittableRandom(seed);
+
+        for (int i = 0; i < operations; i++) {
+            if (i % 500000 == 0) {
+                table.clear();
+                expected.clear();
+            }
+            int cell = rng.nextInt(500);
+            long tick = rng.nextInt(20);
+            int owner = rng.nextInt(50);
+            Integer current = expected.get((tick << 32) | cell);
+
+            int operation = rng.nextInt(3);
+            if (operation == 0) {
+                // a claim succeeds on a free room, or one already claimed by the same owner
+                if (table.reserve(cell, tick, owner) != (current == null || current == owner))
+                    return false;
+                if (current == null)
+                    expected.put((tick << 32) | cell, owner);
+            }
+            else if (operation == 1) {
+                // only the owner can give a claim up
+                if (table.release(cell, tick, owner) != (current != null && current == owner))
+                    return false;
+                if (current != null && current == owner)
+                    expected.remove((tick << 32) | cell);
+            }
+            else if (table.getOwner(cell, tick) != (current == null ? ReservationTable.NONE : current)) {
+                return false;
+            }
+        }
+        return table.size() == expected.size();
+    }
+
+    /**
+     * Saves a maze to a binary file and searches it with ExternalMazeSolver, on a budget of 64 KB,
+     * comparing the path from (1, 1) to the exit with MazeSolver.solveBFS, and the distance from
+     * every room to the room before the exit with DistanceField. When the maze has loops there can be
+     * more than one shortest path, so then only the lengths are compared, and the path is checked
+     * to go through open passages.
+     * @param size The number of rooms in each row & col.
+     * @param seed The seed of the maze.
+     * @param loops True to knock down a wall in one room out of 20 first, making loops.
+     * @return True if the results are the same.
+     * @throws IOException If the files cannot be written.
+     */
+    public static boolean matchesInMemory(int size, long seed, boolean loops) throws IOException
+    {
+        Maze maze = new Maze(size, seed);
+        MazeGrid grid = maze.getGrid();
+        if (loops) {
+            SplittableRandom rng = new SplittableRandom(seed);
+            for (int i = 0; i < size * size / 20; i++)
+                grid.carve(grid.index(1 + rng.nextInt(size - 1), 1 + rng.nextInt(size - 1)), rng.nextBoolean() ? MazeGrid.EAST : MazeGrid.SOUTH);
+        }
+
+        File dir = Files.createTempDirectory("maze-external").toFile();
+        File file = new File(dir, "maze.bin");
+        File fieldFile = new File(dir, "field.bin");
+        MazeBinaryFile.write(grid, seed, file.getPath());
+
+        try (MappedMazeGrid mapped = MazeBinaryFile.open(file.getPath(), false);
+             ExternalMazeSolver external = new ExternalMazeSolver(mapped, dir.getPath(), 64 << 10)) {
+            int start = grid.index(1, 1), goal = grid.index(size, size + 1);
+            int[] expected = new MazeSolver(grid).solveBFS(start, goal);
+            int[] path = external.findPath(start, goal);
+
+            if (path == null || path.length != expected.length || external.distance(start, goal) != expected.length - 1)
+                return false;
+            // the file serves the exit of its header, so a maze on it has the same walls, without writing to it
+            if (ZobristHash.hashWalls(new Maze(mapped).getGrid()) != ZobristHash.hashWalls(grid))
+                return false;
+            for (int i = 0; i < path.length; i++) {
+                if (!loops && path[i] != expected[i])
+                    return false;
+                if (i > 0 && !adjacent(grid, path[i - 1], path[i]))
+                    return false;
+            }
+
+            DistanceField field = new DistanceField(maze);
+            long reached = external.writeDistanceField(size, size, fieldFile.getPath());
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fieldFile)))) {
+                long count = 0;
+                for (int x = 1; x <= size; x++) {
+                    for (int y = 1; y <= size; y++) {
+                        int distance = in.readInt();
+                        if (distance != field.getDistance(x, y))
+                            return false;
+                        if (distance != ExternalMazeSolver.UNREACHABLE)
+                            count++;
+                    }
+                }
+                return count == reached;
+            }
+        }
+        finally {
+            fieldFile.delete();
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    /**
+     * @param grid The grid holding the walls of the maze.
+     * @param a The packed index of a room.
+     * @param b The packed index of another room.
+     * @return True if b can be entered from a in one step.
+     */
+    private static boolean adjacent(MazeGrid grid, int a, int b)
+    {
+        for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1)
+            if (grid.hasExit(a, direction) && grid.neighbor(a, direction) == b)
+                return true;
+        return false;
+    }
+
+    /**
+     * Measures the generation throughput of an algorithm, after one warm-up run.
+     * @param generator The algorithm to measure.
+     * @param size The number of rooms in each row & col.
+     * @param seed The seed of the mazes.
+     * @return The number of rooms generated per second.
+     * @throws IllegalStateException If the generator does not produce a perfect maze.
+     */
+    public static double cellsPerSecond(MazeGenerator generator, int size, long seed)
+    {
+        MazeGrid grid = new MazeGrid(size, size);
+        generator.generate(grid, new SplittableRandom(seed));
+        if (!grid.isPerfect())
+            throw new IllegalStateException(generator.getName() + " did not produce a perfect maze");
+
+        grid.clear();
+        long start = System.nanoTime();
+        generator.generate(grid, new SplittableRandom(seed));
+        long elapsed = System.nanoTime() - start;
+
+        return (double) size * size * 1e9 / Math.max(elapsed, 1);
+    }
+}
\ No newline at end of file
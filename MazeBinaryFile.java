@@ -0,0 +1,207 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A compact binary container for mazes, meant for mazes far too large for the heap.
+ *
+ * The file starts with a fixed 40-byte big-endian header:
+ * magic "MAZE", version (short), reserved (short), width and height in rooms (ints),
+ * the game seed (long), and the entry and exit rooms as (x, y) pairs (ints).
+ * It is followed by the exit bits of every room (see MazeGrid) in row order,
+ * four bits per room and two rooms per byte, the first room of each pair in the low nibble.
+ *
+ * Files are written row by row through a Writer, which is also a MazeRowSink, so a streaming
+ * generator like EllerMazeGenerator can produce a maze that never lives on the heap.
+ * They are opened as a MappedMazeGrid, which reads the rooms straight from the mapped file.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class MazeBinaryFile
+{
+    public static final int MAGIC = 0x4D415A45; // "MAZE"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 40;
+
+    private static final int BUFFER = 1 << 20; // size of the write buffer
+
+    /**
+     * Writes a whole grid to a file, with the entry at (1, 1) and the exit at the bottom right room.
+     * @param grid The grid holding the walls of the maze.
+     * @param seed The seed the maze was generated from.
+     * @param filename The name of the file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(MazeGrid grid, long seed, String filename) throws IOException
+    {
+        byte[] row = new byte[grid.getCols()];
+
+        try (Writer writer = create(filename, grid.getRows(), grid.getCols(), seed)) {
+            for (int x = 1; x <= grid.getRows(); x++) {
+                int cell = grid.index(x, 1);
+                for (int y = 0; y < row.length; y++)
+                    row[y] = (byte) grid.getExits(cell + y);
+                writer.acceptRow(x, row);
+            }
+        }
+    }
+
+    /**
+     * Creates a file and writes its header, with the entry at (1, 1) and the exit at the bottom right room.
+     * @param filename The name of the file.
+     * @param rows The number of rows of rooms (the height).
+     * @param cols The number of columns of rooms (the width).
+     * @param seed The seed the maze is generated from.
+     * @return A writer accepting the rows of the maze in order.
+     * @throws IOException If the file cannot be created.
+     */
+    public static Writer create(String filename, int rows, int cols, long seed) throws IOException
+    {
+        return new Writer(filename, rows, cols, seed);
+    }
+
+    /**
+     * Opens a file as a grid whose rooms are read from (and written to) the mapped file.
+     * @param filename The name of the file.
+     * @param writable True to allow changing the walls, which writes them straight to the file.
+     * @return The mapped grid, to be closed when no longer needed.
+     * @throws IOException If the file cannot be read or is not a maze file.
+     */
+    public static MappedMazeGrid open(String filename, boolean writable) throws IOException
+    {
+        FileChannel channel = writable
+            ? FileChannel.open(Paths.get(filename), StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining())
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException(filename + ": file too short for a maze header");
+            header.flip();
+
+            if (header.getInt() != MAGIC)
+                throw new IOException(filename + ": not a maze file");
+            short version = header.getShort();
+            if (version != VERSION)
+                throw new IOException(filename + ": unsupported maze file version " + version);
+            header.getShort();
+
+            int cols = header.getInt();
+            int rows = header.getInt();
+            long seed = header.getLong();
+            int[] entryAndExit = {header.getInt(), header.getInt(), header.getInt(), header.getInt()};
+
+            if (rows < 1 || cols < 1)
+                throw new IOException(filename + ": invalid maze dimensions " + rows + " x " + cols);
+            long expected = HEADER_SIZE + ((long) rows * cols + 1) / 2;
+            if (channel.size() < expected)
+                throw new IOException(filename + ": truncated, " + channel.size() + " bytes instead of " + expected);
+
+            return new MappedMazeGrid(channel, writable, rows, cols, seed, entryAndExit);
+        }
+        catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes the rows of a maze to a binary maze file as they arrive.
+     */
+    public static class Writer implements MazeRowSink, Closeable
+    {
+        private FileChannel channel;
+        private ByteBuffer buffer;
+        private int rows, cols;
+        private int nextRow; // the row expected next
+        private int pending; // low nibble waiting for its partner, -1 if none
+
+        private Writer(String filename, int rows, int cols, long seed) throws IOException
+        {
+            if (rows < 1 || cols < 1)
+                throw new IllegalArgumentException("Invalid maze dimensions: " + rows + " x " + cols);
+
+            this.rows = rows;
+            this.cols = cols;
+            nextRow = 1;
+            pending = -1;
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocateDirect(BUFFER);
+
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.putShort((short) 0);
+            buffer.putInt(cols);
+            buffer.putInt(rows);
+            buffer.putLong(seed);
+            buffer.putInt(1);
+            buffer.putInt(1);
+            buffer.putInt(rows);
+            buffer.putInt(cols);
+        }
+
+        /**
+         * Packs the next row of the maze into the file.
+         * @param x The row number, which must be the one following the previous row.
+         * @param exits The exit bits of the rooms in the row, exits[0] being column 1.
+         * @throws IOException If the row is out of order or cannot be written.
+         */
+        public void acceptRow(int x, byte[] exits) throws IOException
+        {
+            if (x != nextRow)
+                throw new IOException("Expected row " + nextRow + " but got row " + x);
+            nextRow++;
+
+            for (int y = 0; y < cols; y++) {
+                int bits = exits[y] & MazeGrid.EXITS;
+                if (pending < 0) {
+                    pending = bits;
+                    continue;
+                }
+                if (!buffer.hasRemaining())
+                    flush();
+                buffer.put((byte) (pending | (bits << 4)));
+                pending = -1;
+            }
+        }
+
+        /**
+         * Writes out the last byte and closes the file.
+         * @throws IOException If rows are missing or the file cannot be written.
+         */
+        public void close() throws IOException
+        {
+            try {
+                if (pending >= 0) {
+                    if (!buffer.hasRemaining())
+                        flush();
+                    buffer.put((byte) pending);
+                    pending = -1;
+                }
+                flush();
+                if (nextRow != rows + 1)
+                    throw new IOException("Only " + (nextRow - 1) + " of " + rows + " rows were written");
+            }
+            finally {
+                channel.close();
+            }
+        }
+
+        /**
+         * Writes out everything in the buffer.
+         * @throws IOException If the file cannot be written.
+         */
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+}
\ No newline at end of file
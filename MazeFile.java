@@ -0,0 +1,220 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes mazes in the text format of maze.txt.
+ * The file starts with the exit bits of every room (see MazeGrid), separated by spaces,
+ * followed by a blank line and then anything else, like the ASCII drawing written by this class.
+ * The numbers are either all on one line, for a square maze, or one line per row.
+ *
+ * Files are read through a memory map of the file channel and parsed by a small
+ * hand-written tokenizer, so even very large mazes load at the speed of the disk.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class MazeFile
+{
+    private static final long WINDOW = 1L << 30; // largest part of the file mapped at once
+    private static final int BUFFER = 1 << 20; // size of the write buffer
+
+    /**
+     * Reads a maze from a file.
+     * The numbers are read twice: once to count the rows and columns, then again straight into
+     * a grid of that size, so nothing but the grid is kept on the heap, however large the maze.
+     * @param filename The name of the file.
+     * @return The grid holding the walls of the maze.
+     * @throws IOException If the file cannot be read or is not in the maze.txt format.
+     */
+    public static MazeGrid read(String filename) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            int[] shape = parse(channel, filename, null);
+            MazeGrid grid = new MazeGrid(shape[0], shape[1]);
+            parse(channel, filename, grid);
+            return grid;
+        }
+    }
+
+    /**
+     * Tokenizes the numbers at the start of a file, checking that they make a maze.
+     * @param channel The open file.
+     * @param filename The name of the file, for the error messages.
+     * @param grid The grid to store the rooms in, with the rows and columns found by an earlier call,
+     *             or null to only count them.
+     * @return The number of rows and of columns of rooms.
+     * @throws IOException If the file cannot be read or is not in the maze.txt format.
+     */
+    private static int[] parse(FileChannel channel, String filename, MazeGrid grid) throws IOException
+    {
+        int count = 0; // number of rooms read so far
+        int rows = 0; // number of lines of numbers read so far
+        int cols = -1; // number of rooms in each line, once known
+        int inLine = 0; // number of rooms read on the current line
+        int value = -1; // value of the number being read, -1 between numbers
+        int x = 1, y = 1; // the room the next number goes to, when there is a grid
+        boolean done = false;
+
+        for (long offset = 0; offset < channel.size() && !done; offset += WINDOW) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, channel.size() - offset));
+
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+
+                if (b >= '0' && b <= '9') {
+                    value = (value < 0 ? 0 : value * 10) + (b - '0');
+                    if (value > MazeGrid.EXITS)
+                        throw new IOException(filename + ": invalid room " + value + " after " + count + " rooms");
+                    continue;
+                }
+
+                // anything else ends the current number
+                if (value >= 0) {
+                    if (grid != null) {
+                        grid.setExits(grid.index(x, y), value);
+                        if (++y > grid.getCols()) {
+                            y = 1;
+                            x++;
+                        }
+                    }
+                    count++;
+                    inLine++;
+                    value = -1;
+                }
+
+                if (b == '\n') {
+                    if (inLine == 0 && rows > 0) {
+                        // a blank line ends the numbers
+                        done = true;
+                        break;
+                    }
+                    if (inLine > 0) {
+                        if (cols >= 0 && inLine != cols)
+                            throw new IOException(filename + ": row " + (rows + 1) + " has " + inLine + " rooms instead of " + cols);
+                        cols = inLine;
+                        rows++;
+                        inLine = 0;
+                    }
+                }
+                else if (b != ' ' && b != '\t' && b != '\r') {
+                    throw new IOException(filename + ": unexpected character '" + (char) b + "' after " + count + " rooms");
+                }
+            }
+        }
+
+        // the last number or line may end at the end of the file
+        if (value >= 0) {
+            if (grid != null)
+                grid.setExits(grid.index(x, y), value);
+            count++;
+            inLine++;
+        }
+        if (inLine > 0) {
+            if (cols >= 0 && inLine != cols)
+                throw new IOException(filename + ": row " + (rows + 1) + " has " + inLine + " rooms instead of " + cols);
+            cols = inLine;
+            rows++;
+        }
+
+        if (count == 0)
+            throw new IOException(filename + ": no rooms found");
+
+        // a single line of numbers holds a square maze
+        if (rows == 1) {
+            rows = (int) Math.round(Math.sqrt(count));
+            if ((long) rows * rows != count)
+                throw new IOException(filename + ": " + count + " rooms do not make a square maze");
+            cols = rows;
+        }
+        return new int[] {rows, cols};
+    }
+
+    /**
+     * Writes a maze to a file: the exit bits of every room, one line per row,
+     * then a blank line and an ASCII drawing of the maze.
+     * @param grid The grid holding the walls of the maze.
+     * @param filename The name of the file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(MazeGrid grid, String filename) throws IOException
+    {
+        Path path = Paths.get(filename);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+            int rows = grid.getRows();
+            int cols = grid.getCols();
+
+            // the exit bits, one line per row
+            for (int x = 1; x <= rows; x++) {
+                int cell = grid.index(x, 1);
+                for (int y = 0; y < cols; y++) {
+                    flushIfFull(channel, buffer, 4);
+                    int exits = grid.getExits(cell + y);
+                    if (y > 0)
+                        buffer.put((byte) ' ');
+                    if (exits >= 10)
+                        buffer.put((byte) '1');
+                    buffer.put((byte) ('0' + exits % 10));
+                }
+                flushIfFull(channel, buffer, 1);
+                buffer.put((byte) '\n');
+            }
+
+            // the drawing, a top wall and then the south and east walls of every room
+            flushIfFull(channel, buffer, 64);
+            buffer.put(("\n" + rows + " x " + cols + " maze\n\n").getBytes("US-ASCII"));
+            for (int y = 0; y <= 2 * cols; y++) {
+                flushIfFull(channel, buffer, 1);
+                buffer.put((byte) '_');
+            }
+            flushIfFull(channel, buffer, 1);
+            buffer.put((byte) '\n');
+
+            for (int x = 1; x <= rows; x++) {
+                int cell = grid.index(x, 1);
+                flushIfFull(channel, buffer, 1);
+                buffer.put((byte) '|');
+                for (int y = 0; y < cols; y++) {
+                    flushIfFull(channel, buffer, 2);
+                    boolean southWall = !grid.hasExit(cell + y, MazeGrid.SOUTH);
+                    buffer.put((byte) (southWall ? '_' : ' '));
+                    if (!grid.hasExit(cell + y, MazeGrid.EAST))
+                        buffer.put((byte) '|');
+                    else if (southWall && y + 1 < cols && !grid.hasExit(cell + y + 1, MazeGrid.SOUTH))
+                        buffer.put((byte) '_');
+                    else
+                        buffer.put((byte) ' ');
+                }
+                flushIfFull(channel, buffer, 1);
+                buffer.put((byte) '\n');
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes the buffer out if it does not have room for the next few bytes.
+     * @param channel The channel to write to.
+     * @param buffer The buffer being filled.
+     * @param needed The number of bytes about to be put into the buffer.
+     * @throws IOException If the channel cannot be written.
+     */
+    private static void flushIfFull(FileChannel channel, ByteBuffer buffer, int needed) throws IOException
+    {
+        if (buffer.remaining() >= needed)
+            return;
+
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+import java.util.SplittableRandom;
+
+/**
+ * A maze generation algorithm.
+ * Implementations carve a perfect maze (exactly one path between any two rooms)
+ * into an empty MazeGrid; Maze and the benchmarks can use any of them.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public interface MazeGenerator
+{
+    /**
+     * Carves a perfect maze over the whole grid. The boundary ring is never carved.
+     * @param grid The grid to carve, with no exits yet.
+     * @param rng The random number stream used by the algorithm.
+     */
+    void generate(MazeGrid grid, SplittableRandom rng);
+
+    /**
+     * @return A short name of the algorithm, used in reports.
+     */
+    String getName();
+}
\ No newline at end of file
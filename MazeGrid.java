@@ -0,0 +1,311 @@
+import java.util.Arrays;
+
+/**
+ * A compact representation of the maze topology.
+ * Every room is a single byte of exit bits, using the same bitmask convention as maze.txt:
+ * north = 1, south = 2, east = 4, west = 8 (a set bit means there is an exit that way).
+ *
+ * Subclasses can keep the bits somewhere else than the heap, see MappedMazeGrid.
+ *
+ * Like Maze, the grid is surrounded by a ring of boundary rooms, so rooms are addressed
+ * by (x, y) with 1 <= x <= rows and 1 <= y <= cols, and the neighbors of an interior room
+ * never fall outside the array. Rooms are also addressed by a packed index (x * stride + y),
+ * which is what generators, solvers and enemies use for cache-friendly neighbor lookups.
+ *
+ * Model part of the Game Engine Architecture.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class MazeGrid implements MazeRowSink
+{
+    // exit bits, as in maze.txt
+    public static final int NORTH = 1;
+    public static final int SOUTH = 2;
+    public static final int EAST = 4;
+    public static final int WEST = 8;
+    public static final int EXITS = NORTH | SOUTH | EAST | WEST;
+
+    // marks the ring of boundary rooms around the maze
+    public static final int BOUNDARY = 16;
+
+    private final int rows; // number of rows of rooms, without the boundary
+    private final int cols; // number of columns of rooms, without the boundary
+    private final int stride; // distance between two vertically adjacent rooms in the cells array
+    private final int length; // number of packed indexes, including the boundary ring
+    private final byte[] cells; // exit bits of every room, row by row, or null if kept by a subclass
+
+    /**
+     * Constructor for objects of class MazeGrid.
+     * All rooms start with no exits.
+     * @param rows The number of rows of rooms.
+     * @param cols The number of columns of rooms.
+     */
+    public MazeGrid(int rows, int cols)
+    {
+        this(rows, cols, true);
+    }
+
+    /**
+     * Constructor for subclasses that keep the exit bits themselves.
+     * @param rows The number of rows of rooms.
+     * @param cols The number of columns of rooms.
+     * @param allocate True to keep the exit bits in an array on the heap.
+     */
+    protected MazeGrid(int rows, int cols, boolean allocate)
+    {
+        if (rows < 1 || cols < 1)
+            throw new IllegalArgumentException("Invalid maze dimensions: " + rows + " x " + cols);
+        if ((long) (rows + 2) * (cols + 2) > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Maze too large for a packed grid: " + rows + " x " + cols);
+
+        this.rows = rows;
+        this.cols = cols;
+        stride = cols + 2;
+        length = (rows + 2) * stride;
+        cells = allocate ? new byte[length] : null;
+        if (allocate)
+            clear();
+    }
+
+    /**
+     * Removes all exits, leaving only the boundary ring marked.
+     */
+    public void clear()
+    {
+        Arrays.fill(cells, (byte) 0);
+
+        for (int y = 0; y < stride; y++) {
+            cells[y] = BOUNDARY;
+            cells[(rows + 1) * stride + y] = BOUNDARY;
+        }
+        for (int x = 0; x < rows + 2; x++) {
+            cells[x * stride] = BOUNDARY;
+            cells[x * stride + cols + 1] = BOUNDARY;
+        }
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @return All the bits stored for the room, including BOUNDARY.
+     */
+    protected int getCell(int cell) {return cells[cell];}
+
+    /**
+     * @param cell The packed index of a room.
+     * @param bits All the bits to store for the room, including BOUNDARY.
+     */
+    protected void setCell(int cell, int bits) {cells[cell] = (byte) bits;}
+
+    /**
+     * @param x The row of the room.
+     * @param y The column of the room.
+     * @return The packed index of the room.
+     */
+    public int index(int x, int y) {return x * stride + y;}
+
+    /**
+     * @param cell The packed index of a room.
+     * @return The row of the room.
+     */
+    public int getX(int cell) {return cell / stride;}
+
+    /**
+     * @param cell The packed index of a room.
+     * @return The column of the room.
+     */
+    public int getY(int cell) {return cell % stride;}
+
+    /**
+     * @param cell The packed index of a room.
+     * @return The exit bits of the room.
+     */
+    public int getExits(int cell) {return getCell(cell) & EXITS;}
+
+    /**
+     * Overwrites the exit bits of a room, on this side only.
+     * @param cell The packed index of a room.
+     * @param exits The new exit bits.
+     */
+    public void setExits(int cell, int exits)
+    {
+        setCell(cell, (getCell(cell) & ~EXITS) | (exits & EXITS));
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @param direction One of NORTH, SOUTH, EAST or WEST.
+     * @return True if the room has an exit in that direction.
+     */
+    public boolean hasExit(int cell, int direction) {return (getCell(cell) & direction) != 0;}
+
+    /**
+     * Opens an exit on this side of the wall only.
+     * @param cell The packed index of a room.
+     * @param direction One of NORTH, SOUTH, EAST or WEST.
+     */
+    public void addExit(int cell, int direction) {setCell(cell, getCell(cell) | direction);}
+
+    /**
+     * Knocks down the wall between a room and its neighbor, opening both sides.
+     * @param cell The packed index of a room.
+     * @param direction One of NORTH, SOUTH, EAST or WEST.
+     */
+    public void carve(int cell, int direction)
+    {
+        int next = neighbor(cell, direction);
+        setCell(cell, getCell(cell) | direction);
+        setCell(next, getCell(next) | opposite(direction));
+    }
+
+    /**
+     * Builds a wall between a room and its neighbor, closing both sides.
+     * @param cell The packed index of a room.
+     * @param direction One of NORTH, SOUTH, EAST or WEST.
+     */
+    public void addWall(int cell, int direction)
+    {
+        int next = neighbor(cell, direction);
+        setCell(cell, getCell(cell) & ~direction);
+        setCell(next, getCell(next) & ~opposite(direction));
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @param direction One of NORTH, SOUTH, EAST or WEST.
+     * @return The packed index of the neighboring room in that direction.
+     */
+    public int neighbor(int cell, int direction)
+    {
+        if (direction == NORTH)
+            return cell - stride;
+        else if (direction == SOUTH)
+            return cell + stride;
+        else if (direction == EAST)
+            return cell + 1;
+        else
+            return cell - 1;
+    }
+
+    /**
+     * Stores a row produced by a streaming generator, such as EllerMazeGenerator.
+     * @param x The row number (1 to the number of rows).
+     * @param exits The exit bits of the rooms in the row, exits[0] being column 1.
+     */
+    public void acceptRow(int x, byte[] exits)
+    {
+        int cell = index(x, 1);
+        for (int c = 0; c < cols; c++)
+            setExits(cell + c, exits[c]);
+    }
+
+    /**
+     * @param direction One of NORTH, SOUTH, EAST or WEST.
+     * @return The direction pointing the opposite way.
+     */
+    public static int opposite(int direction)
+    {
+        if (direction == NORTH)
+            return SOUTH;
+        else if (direction == SOUTH)
+            return NORTH;
+        else if (direction == EAST)
+            return WEST;
+        else
+            return EAST;
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @return True if the room is part of the boundary ring around the maze.
+     */
+    public boolean isBoundary(int cell) {return (getCell(cell) & BOUNDARY) != 0;}
+
+    /**
+     * Generators use this to tell which rooms they have not reached yet.
+     * @param cell The packed index of a room.
+     * @return True if the room is not a boundary room and has no exits at all.
+     */
+    public boolean isUntouched(int cell) {return getCell(cell) == 0;}
+
+    /**
+     * Checks that the rooms form a perfect maze: every room can be reached from (1, 1),
+     * and there are exactly (rooms - 1) passages, so there is exactly one path between
+     * any two rooms. Exits into the boundary ring, like the exit of the maze, are not counted.
+     * @return True if the grid is a perfect maze.
+     */
+    public boolean isPerfect()
+    {
+        // count the passages between interior rooms, looking east and south only
+        long passages = 0;
+        for (int x = 1; x <= rows; x++) {
+            for (int y = 1; y <= cols; y++) {
+                int cell = index(x, y);
+                if (y < cols && hasExit(cell, EAST)) passages++;
+                if (x < rows && hasExit(cell, SOUTH)) passages++;
+            }
+        }
+
+        long rooms = (long) rows * cols;
+        if (passages != rooms - 1)
+            return false;
+
+        // breadth-first search from (1, 1) with a bitset of reached rooms and a growing ring buffer
+        long[] reached = new long[(length + 63) >>> 6];
+        int[] queue = new int[1024];
+        int head = 0, count = 1;
+        long found = 1;
+        int start = index(1, 1);
+        reached[start >>> 6] |= 1L << start;
+        queue[0] = start;
+
+        while (count > 0) {
+            int cell = queue[head];
+            head = (head + 1) & (queue.length - 1);
+            count--;
+
+            for (int direction = NORTH; direction <= WEST; direction <<= 1) {
+                if (!hasExit(cell, direction))
+                    continue;
+                int next = neighbor(cell, direction);
+                if (isBoundary(next) || (reached[next >>> 6] & (1L << next)) != 0)
+                    continue;
+                reached[next >>> 6] |= 1L << next;
+                found++;
+
+                if (count == queue.length) {
+                    // the ring is full, so unroll it into one twice as big
+                    int[] bigger = new int[queue.length * 2];
+                    for (int i = 0; i < count; i++)
+                        bigger[i] = queue[(head + i) & (queue.length - 1)];
+                    queue = bigger;
+                    head = 0;
+                }
+                queue[(head + count) & (queue.length - 1)] = next;
+                count++;
+            }
+        }
+
+        return found == rooms;
+    }
+
+    /**
+     * @return The number of rows of rooms, without the boundary.
+     */
+    public int getRows() {return rows;}
+
+    /**
+     * @return The number of columns of rooms, without the boundary.
+     */
+    public int getCols() {return cols;}
+
+    /**
+     * @return The difference between the packed indexes of two vertically adjacent rooms.
+     */
+    public int getStride() {return stride;}
+
+    /**
+     * @return The number of packed indexes, including the boundary ring.
+     */
+    public int getLength() {return length;}
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+/**
+ * Listens for changes to the walls of a maze, such as the walls broken by Game.breakWalls,
+ * so that anything computed from the walls (paths, distance fields, routes) can be repaired
+ * right away instead of being computed again from scratch.
+ * Listeners are registered with Maze.addMazeListener.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public interface MazeListener
+{
+    /**
+     * Called after one side of a wall has changed. Walls have two sides,
+     * so opening a passage usually calls this twice, once from each room.
+     * @param x The row of the room whose side changed.
+     * @param y The column of the room whose side changed.
+     * @param direction The side of the room (MazeGrid.NORTH, SOUTH, EAST or WEST).
+     * @param opened True if an exit was opened, false if a wall was put back.
+     */
+    void wallChanged(int x, int y, int direction, boolean opened);
+}
\ No newline at end of file
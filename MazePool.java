@@ -0,0 +1,125 @@
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Keeps a few mazes ready for the next games, generated and rendered on a background thread,
+ * so that starting or restarting a game does not wait for the maze to be carved and drawn.
+ * Every prepared maze comes with its seed, so any game can still be replayed exactly.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class MazePool
+{
+    private BlockingQueue<Prepared> ready; // mazes waiting for a game, oldest first
+    private Thread worker;
+    private int size;
+
+    /**
+     * Constructor for objects of class MazePool, which starts filling the pool straight away.
+     * @param size The number of rooms in each row & col of the mazes.
+     * @param capacity The number of mazes kept ready.
+     */
+    public MazePool(int size, int capacity)
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid pool capacity: " + capacity);
+
+        this.size = size;
+        ready = new ArrayBlockingQueue<Prepared>(capacity);
+
+        // a daemon thread, so a pool that is still filling never keeps the game from exiting
+        worker = new Thread(this::fill, "maze-pool");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * Generates and renders mazes until the pool is shut down, waiting whenever the pool is full.
+     */
+    private void fill()
+    {
+        try {
+            while (true)
+                ready.put(prepare(new GameRandom().getSeed()));
+        }
+        catch (InterruptedException ex) {
+            // shut down
+        }
+    }
+
+    /**
+     * Generates and renders the maze of a game.
+     * @param seed The seed of the game.
+     * @return The prepared maze.
+     */
+    private Prepared prepare(long seed)
+    {
+        Maze maze = new Maze(size, new GameRandom(seed).getMazeRandom());
+        return new Prepared(seed, maze, Renderer.rasterizeMaze(maze));
+    }
+
+    /**
+     * Takes the next prepared maze, waiting for one only if the pool has run dry.
+     * @return A maze ready for a new game.
+     */
+    public Prepared take()
+    {
+        Prepared next = ready.poll();
+        if (next != null)
+            return next;
+
+        // faster to make one here than to wait for the worker to finish its current maze
+        return prepare(new GameRandom().getSeed());
+    }
+
+    /**
+     * @return The number of mazes ready right now.
+     */
+    public int getReady()
+    {
+        return ready.size();
+    }
+
+    /**
+     * Stops the background thread. Mazes already prepared can still be taken.
+     */
+    public void shutdown()
+    {
+        worker.interrupt();
+    }
+
+    /**
+     * A maze generated from a game seed, together with its rendering.
+     */
+    public static class Prepared
+    {
+        private long seed;
+        private Maze maze;
+        private BufferedImage image;
+
+        private Prepared(long seed, Maze maze, BufferedImage image)
+        {
+            this.seed = seed;
+            this.maze = maze;
+            this.image = image;
+        }
+
+        /**
+         * @return seed The seed of the game the maze was generated for.
+         */
+        public long getSeed() {return seed;}
+
+        /**
+         * @return maze The maze, with nothing placed in it yet.
+         */
+        public Maze getMaze() {return maze;}
+
+        /**
+         * @return image The maze rendered by Renderer.rasterizeMaze.
+         */
+        public BufferedImage getImage() {return image;}
+    }
+}
\ No newline at end of file
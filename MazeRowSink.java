@@ -0,0 +1,21 @@
+import java.io.IOException;
+
+/**
+ * Receives a maze one row at a time, as it is being generated.
+ * A sink can write the rows to a file, draw them or send them over the network,
+ * so the whole maze never has to be held in memory.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public interface MazeRowSink
+{
+    /**
+     * Accepts the next row of the maze. Rows arrive in order, starting from row 1.
+     * The array is reused for the following row, so a sink that wants to keep it must copy it.
+     * @param x The row number (1 to the number of rows).
+     * @param exits The exit bits of the rooms in the row (see MazeGrid), exits[0] being column 1.
+     * @throws IOException If the row could not be written.
+     */
+    void acceptRow(int x, byte[] exits) throws IOException;
+}
\ No newline at end of file
@@ -0,0 +1,568 @@
+import java.util.Arrays;
+
+/**
+ * Finds paths through a maze without drawing anything, so it can run without a canvas,
+ * on mazes of any depth, and as often as needed.
+ * It offers breadth-first search, A* search with the Manhattan distance, and depth-first search,
+ * the last one trying east, south, north and west in that order like the solver of the original game.
+ * For huge mazes there is also a bidirectional breadth-first search, which grows one frontier from
+ * the start and one from the goal until they meet, and a search for the nearest of many goals at once.
+ *
+ * A path is returned as an array of packed cell indices (see MazeGrid.index), from start to goal.
+ * All the working arrays are allocated once, the first time they are needed, and reused by every
+ * later search: rooms are marked as visited with the number of the search instead of a flag,
+ * so nothing has to be cleared between searches and the only allocation is the returned path.
+ * distanceBFS and countReachable return no path, so they allocate nothing at all.
+ * Passages are followed from the side of the room being left, and the boundary ring is only
+ * entered if it is the goal, like the exit room.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class MazeSolver
+{
+    private static final int[] DEPTH_FIRST_ORDER = {MazeGrid.EAST, MazeGrid.SOUTH, MazeGrid.NORTH, MazeGrid.WEST};
+
+    private MazeGrid grid; // the maze being solved
+    private int[] visited; // number of the search that last reached each room
+    private int[] parent; // room each room was reached from, valid if visited by the current search
+    private int[] queue; // the breadth-first queue, the A* heap or the depth-first stack
+    private int[] cost; // A*: number of steps from the start
+    private int[] remaining; // A*: Manhattan distance to the goal
+    private int[] heapIndex; // A*: position of each room in the heap
+    private byte[] tried; // depth-first: number of directions already tried from each room on the path
+    private int[] moves; // depth-first trace: rooms entered and left, in order
+    private long[] reachedFromStart; // bidirectional: bitsets of the rooms reached by each frontier
+    private long[] reachedFromGoal;
+    private int[] parentToGoal; // bidirectional: room each room was reached from by the goal's frontier
+    private int[] queueFromGoal; // bidirectional: queue of the goal's frontier
+    private long[] goals; // nearest goal: bitset of the goals
+    private int search; // number of the current search
+    private int nodesExpanded; // rooms expanded by the last search
+
+    /**
+     * Constructor for objects of class MazeSolver.
+     * @param grid The grid holding the walls of the maze.
+     */
+    public MazeSolver(MazeGrid grid)
+    {
+        this.grid = grid;
+        visited = new int[grid.getLength()];
+        parent = new int[grid.getLength()];
+        queue = new int[grid.getLength()];
+        search = 0;
+    }
+
+    /**
+     * Breadth-first search, giving a shortest path.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The rooms of the path from start to goal, or null if the goal cannot be reached.
+     */
+    public int[] solveBFS(int start, int goal)
+    {
+        int found = searchBFS(start, goal);
+        return found < 0 ? null : path(start, found);
+    }
+
+    /**
+     * Breadth-first search that only measures the shortest path, so nothing at all is allocated.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The number of steps from start to goal, or -1 if the goal cannot be reached.
+     */
+    public int distanceBFS(int start, int goal)
+    {
+        if (searchBFS(start, goal) < 0)
+            return -1;
+        int steps = 0;
+        for (int cell = goal; cell != start; cell = parent[cell])
+            steps++;
+        return steps;
+    }
+
+    /**
+     * Breadth-first search of every room that can be reached, without allocating anything.
+     * @param start The packed index of the first room.
+     * @return The number of rooms that can be reached from start, start included.
+     */
+    public int countReachable(int start)
+    {
+        searchBFS(start, -1);
+        return nodesExpanded;
+    }
+
+    /**
+     * Breadth-first search, leaving the parents of the rooms reached in parent.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach, or -1 to reach every room.
+     * @return The goal, or -1 if it was not reached.
+     */
+    private int searchBFS(int start, int goal)
+    {
+        int run = nextSearch();
+        int head = 0, tail = 0;
+        visited[start] = run;
+        parent[start] = start;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            nodesExpanded++;
+            if (cell == goal)
+                return goal;
+
+            for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1) {
+                int next = step(cell, direction, goal);
+                if (next < 0 || visited[next] == run)
+                    continue;
+                visited[next] = run;
+                parent[next] = cell;
+                queue[tail++] = next;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A* search guided by the Manhattan distance to the goal, giving a shortest path
+     * while expanding fewer rooms than breadth-first search when the maze has loops.
+     * Ties are broken towards the room closest to the goal.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The rooms of the path from start to goal, or null if the goal cannot be reached.
+     */
+    public int[] solveAStar(int start, int goal)
+    {
+        if (cost == null) {
+            cost = new int[grid.getLength()];
+            remaining = new int[grid.getLength()];
+            heapIndex = new int[grid.getLength()];
+        }
+
+        int run = nextSearch();
+        int goalX = grid.getX(goal), goalY = grid.getY(goal);
+        int size = 0; // rooms in the heap; a room visited but no longer in it is closed
+
+        visited[start] = run;
+        parent[start] = start;
+        cost[start] = 0;
+        remaining[start] = Math.abs(grid.getX(start) - goalX) + Math.abs(grid.getY(start) - goalY);
+        size = push(start, size);
+
+        while (size > 0) {
+            int cell = queue[0];
+            size = pop(size);
+            nodesExpanded++;
+            if (cell == goal)
+                return path(start, goal);
+
+            for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1) {
+                int next = step(cell, direction, goal);
+                if (next < 0)
+                    continue;
+
+                int steps = cost[cell] + 1;
+                if (visited[next] != run) {
+                    visited[next] = run;
+                    parent[next] = cell;
+                    cost[next] = steps;
+                    remaining[next] = Math.abs(grid.getX(next) - goalX) + Math.abs(grid.getY(next) - goalY);
+                    size = push(next, size);
+                }
+                else if (steps < cost[next] && heapIndex[next] >= 0) {
+                    // a shorter way to a room still waiting in the heap
+                    parent[next] = cell;
+                    cost[next] = steps;
+                    siftUp(heapIndex[next]);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Iterative depth-first search, following each passage as far as it goes before backtracking.
+     * The path is simply the stack of rooms being explored when the goal is reached.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The rooms of the path from start to goal, or null if the goal cannot be reached.
+     */
+    public int[] solveDFS(int start, int goal)
+    {
+        if (tried == null)
+            tried = new byte[grid.getLength()];
+
+        int run = nextSearch();
+        int depth = 0;
+        visited[start] = run;
+        tried[start] = 0;
+        queue[depth++] = start;
+        nodesExpanded++;
+
+        while (depth > 0) {
+            int cell = queue[depth - 1];
+            if (cell == goal) {
+                int[] path = new int[depth];
+                System.arraycopy(queue, 0, path, 0, depth);
+                return path;
+            }
+
+            if (tried[cell] == DEPTH_FIRST_ORDER.length) {
+                depth--; // dead end, backtrack
+                continue;
+            }
+
+            int next = step(cell, DEPTH_FIRST_ORDER[tried[cell]++], goal);
+            if (next < 0 || visited[next] == run)
+                continue;
+            visited[next] = run;
+            tried[next] = 0;
+            queue[depth++] = next;
+            nodesExpanded++;
+        }
+        return null;
+    }
+
+    /**
+     * The same depth-first search as solveDFS, recording every move it makes on the way,
+     * so the search can be replayed, backtracking and all, after it has finished.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The moves in order: the packed index of every room entered, and the complement (~cell)
+     *         of every room left for good when backtracking; the last move enters the goal.
+     *         Null if the goal cannot be reached.
+     */
+    public int[] traceDFS(int start, int goal)
+    {
+        if (tried == null)
+            tried = new byte[grid.getLength()];
+        if (moves == null)
+            moves = new int[2 * grid.getLength()]; // every room is entered and left at most once
+
+        int run = nextSearch();
+        int depth = 0, count = 0;
+        visited[start] = run;
+        tried[start] = 0;
+        queue[depth++] = start;
+        moves[count++] = start;
+        nodesExpanded++;
+
+        while (depth > 0) {
+            int cell = queue[depth - 1];
+            if (cell == goal)
+                return Arrays.copyOf(moves, count);
+
+            if (tried[cell] == DEPTH_FIRST_ORDER.length) {
+                depth--; // dead end, backtrack
+                moves[count++] = ~cell;
+                continue;
+            }
+
+            int next = step(cell, DEPTH_FIRST_ORDER[tried[cell]++], goal);
+            if (next < 0 || visited[next] == run)
+                continue;
+            visited[next] = run;
+            tried[next] = 0;
+            queue[depth++] = next;
+            moves[count++] = next;
+            nodesExpanded++;
+        }
+        return null;
+    }
+
+    /**
+     * Bidirectional breadth-first search, giving a shortest path. The two frontiers grow one layer
+     * at a time, always the smaller one, and stop as soon as a room is reached by both, so in a
+     * winding maze far fewer rooms are expanded than by a search from the start alone.
+     * Rooms reached are kept in two bitsets, cleared before every search.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room to reach.
+     * @return The rooms of the path from start to goal, or null if the goal cannot be reached.
+     */
+    public int[] solveBidirectional(int start, int goal)
+    {
+        if (reachedFromStart == null) {
+            reachedFromStart = new long[(grid.getLength() + 63) >>> 6];
+            reachedFromGoal = new long[reachedFromStart.length];
+            parentToGoal = new int[grid.getLength()];
+            queueFromGoal = new int[grid.getLength()];
+        }
+
+        nextSearch();
+        if (start == goal)
+            return new int[] {start};
+
+        Arrays.fill(reachedFromStart, 0);
+        Arrays.fill(reachedFromGoal, 0);
+        reachedFromStart[start >>> 6] |= 1L << start;
+        reachedFromGoal[goal >>> 6] |= 1L << goal;
+        parent[start] = start;
+        parentToGoal[goal] = goal;
+        queue[0] = start;
+        queueFromGoal[0] = goal;
+        int head = 0, tail = 1; // the start's frontier
+        int headFromGoal = 0, tailFromGoal = 1; // the goal's frontier
+
+        while (head < tail && headFromGoal < tailFromGoal) {
+            if (tail - head <= tailFromGoal - headFromGoal) {
+                // one layer forwards, through the exits of the rooms being left
+                for (int end = tail; head < end; head++) {
+                    int cell = queue[head];
+                    nodesExpanded++;
+                    for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1) {
+                        int next = step(cell, direction, goal);
+                        if (next < 0 || (reachedFromStart[next >>> 6] & (1L << next)) != 0)
+                            continue;
+                        reachedFromStart[next >>> 6] |= 1L << next;
+                        parent[next] = cell;
+                        if ((reachedFromGoal[next >>> 6] & (1L << next)) != 0)
+                            return join(start, next, goal);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            else {
+                // one layer backwards, into the rooms with an exit towards the frontier
+                for (int end = tailFromGoal; headFromGoal < end; headFromGoal++) {
+                    int cell = queueFromGoal[headFromGoal];
+                    nodesExpanded++;
+                    for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1) {
+                        int next = grid.neighbor(cell, direction);
+                        if (grid.isBoundary(next) || !grid.hasExit(next, MazeGrid.opposite(direction))
+                            || (reachedFromGoal[next >>> 6] & (1L << next)) != 0)
+                            continue;
+                        reachedFromGoal[next >>> 6] |= 1L << next;
+                        parentToGoal[next] = cell;
+                        if ((reachedFromStart[next >>> 6] & (1L << next)) != 0)
+                            return join(start, next, goal);
+                        queueFromGoal[tailFromGoal++] = next;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Breadth-first search for the closest of many goals, like the dots left in the game,
+     * in a single pass instead of one search per goal.
+     * @param start The packed index of the first room.
+     * @param targets The packed indices of the goals.
+     * @return The rooms of the path from start to the nearest goal, or null if no goal can be reached.
+     */
+    public int[] solveNearest(int start, int[] targets)
+    {
+        if (goals == null)
+            goals = new long[(grid.getLength() + 63) >>> 6];
+        for (int target : targets)
+            goals[target >>> 6] |= 1L << target;
+
+        int run = nextSearch();
+        int head = 0, tail = 0, found = -1;
+        visited[start] = run;
+        parent[start] = start;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            nodesExpanded++;
+            if ((goals[cell >>> 6] & (1L << cell)) != 0) {
+                found = cell;
+                break;
+            }
+
+            for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1) {
+                int next = step(cell, direction, -1);
+                if (next < 0 || visited[next] == run)
+                    continue;
+                visited[next] = run;
+                parent[next] = cell;
+                queue[tail++] = next;
+            }
+        }
+
+        // only the goals' words were touched, so only they need clearing
+        for (int target : targets)
+            goals[target >>> 6] = 0;
+        return found < 0 ? null : path(start, found);
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @return True if the last search reached the room, like the rooms counted by countReachable.
+     */
+    public boolean isReached(int cell) {return search > 0 && visited[cell] == search;}
+
+    /**
+     * @return The number of rooms expanded by the last search.
+     */
+    public int getNodesExpanded() {return nodesExpanded;}
+
+    /**
+     * @return grid The grid holding the walls of the maze.
+     */
+    public MazeGrid getGrid() {return grid;}
+
+    /**
+     * Starts a new search, so that rooms visited by the earlier ones count as unvisited.
+     * @return The number of the new search.
+     */
+    private int nextSearch()
+    {
+        nodesExpanded = 0;
+        search++;
+        if (search == 0) {
+            // the counter wrapped around, so old marks could look current
+            Arrays.fill(visited, 0);
+            search = 1;
+        }
+        return search;
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @param direction One of MazeGrid.NORTH, SOUTH, EAST or WEST.
+     * @param goal The packed index of the goal, which may be in the boundary ring.
+     * @return The room through the exit in that direction, or -1 if there is no way through.
+     */
+    private int step(int cell, int direction, int goal)
+    {
+        if (!grid.hasExit(cell, direction))
+            return -1;
+        int next = grid.neighbor(cell, direction);
+        if (next != goal && grid.isBoundary(next))
+            return -1;
+        return next;
+    }
+
+    /**
+     * Follows the parents back from the goal.
+     * @param start The packed index of the first room.
+     * @param goal The packed index of the room reached.
+     * @return The rooms of the path from start to goal.
+     */
+    private int[] path(int start, int goal)
+    {
+        int length = 1;
+        for (int cell = goal; cell != start; cell = parent[cell])
+            length++;
+
+        int[] path = new int[length];
+        for (int cell = goal, i = length - 1; i >= 0; cell = parent[cell], i--)
+            path[i] = cell;
+        return path;
+    }
+
+    /**
+     * Joins the halves of a bidirectional path where the two frontiers met.
+     * @param start The packed index of the first room.
+     * @param meeting The packed index of the room reached by both frontiers.
+     * @param goal The packed index of the room to reach.
+     * @return The rooms of the path from start to goal.
+     */
+    private int[] join(int start, int meeting, int goal)
+    {
+        int length = 1;
+        for (int cell = meeting; cell != start; cell = parent[cell])
+            length++;
+        int half = length;
+        for (int cell = meeting; cell != goal; cell = parentToGoal[cell])
+            length++;
+
+        int[] path = new int[length];
+        for (int cell = meeting, i = half - 1; i >= 0; cell = parent[cell], i--)
+            path[i] = cell;
+        for (int cell = meeting, i = half; i < length; i++) {
+            cell = parentToGoal[cell];
+            path[i] = cell;
+        }
+        return path;
+    }
+
+    /**
+     * @param a The packed index of a room in the heap.
+     * @param b The packed index of another room in the heap.
+     * @return True if a should be expanded before b.
+     */
+    private boolean before(int a, int b)
+    {
+        int fa = cost[a] + remaining[a];
+        int fb = cost[b] + remaining[b];
+        return fa < fb || (fa == fb && remaining[a] < remaining[b]);
+    }
+
+    /**
+     * Adds a room to the heap.
+     * @param cell The packed index of the room.
+     * @param size The number of rooms in the heap.
+     * @return The new number of rooms in the heap.
+     */
+    private int push(int cell, int size)
+    {
+        queue[size] = cell;
+        heapIndex[cell] = size;
+        siftUp(size);
+        return size + 1;
+    }
+
+    /**
+     * Removes the first room from the heap, marking it as closed.
+     * @param size The number of rooms in the heap.
+     * @return The new number of rooms in the heap.
+     */
+    private int pop(int size)
+    {
+        heapIndex[queue[0]] = -1;
+        size--;
+        if (size > 0) {
+            queue[0] = queue[size];
+            heapIndex[queue[0]] = 0;
+            siftDown(0, size);
+        }
+        return size;
+    }
+
+    /**
+     * Moves a room up the heap until its parent comes before it.
+     * @param i The position of the room in the heap.
+     */
+    private void siftUp(int i)
+    {
+        int cell = queue[i];
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (!before(cell, queue[up]))
+                break;
+            queue[i] = queue[up];
+            heapIndex[queue[i]] = i;
+            i = up;
+        }
+        queue[i] = cell;
+        heapIndex[cell] = i;
+    }
+
+    /**
+     * Moves a room down the heap until it comes before its children.
+     * @param i The position of the room in the heap.
+     * @param size The number of rooms in the heap.
+     */
+    private void siftDown(int i, int size)
+    {
+        int cell = queue[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && before(queue[child + 1], queue[child]))
+                child++;
+            if (!before(queue[child], cell))
+                break;
+            queue[i] = queue[child];
+            heapIndex[queue[i]] = i;
+            i = child;
+        }
+        queue[i] = cell;
+        heapIndex[cell] = i;
+    }
+}
\ No newline at end of file
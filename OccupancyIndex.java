@@ -0,0 +1,330 @@
+import java.util.Arrays;
+
+/**
+ * Where everything in a maze is: players, evil circles, power-ups, dots, or any other kind of entity.
+ * Every kind has a bitset over the cells of the MazeGrid, with one bit per packed index, set while
+ * at least one entity of that kind is in the room. So asking whether a room holds anything of a kind,
+ * like an evil circle, is a single word test. Finding the rooms where two kinds meet, like players
+ * and power-ups, is an intersection of bitsets, done 64 rooms at a time.
+ *
+ * The entities themselves are numbered from 0. Each one has a kind, a tag telling it from the others
+ * of its kind (like the number of a player), and a room. The entities in a room are linked in a list,
+ * which is nearly always empty or holds just one, so the few rooms holding several cost nothing more.
+ * There can be any number of kinds and of entities: a bitset is only made when its kind is first used,
+ * and the numbers of removed entities are given out again.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class OccupancyIndex
+{
+    // kinds of entity in the game; any other kind can use the numbers after these
+    public static final int PLAYER = 0; // tagged 1 or 2
+    public static final int EVIL = 1; // tagged with the number of the evil circle in its EnemySystem
+    public static final int KILL_EVIL = 2; // tagged 1, 2, ...; power-up i kills evil circle i - 1
+    public static final int INVINCIBILITY = 3; // tagged 1, 2, ...
+    public static final int DOUBLE_SPEED = 4; // tagged 1, 2, ...
+    public static final int DOT = 5; // tagged 0
+
+    public static final int NONE = -1; // no entity, or no room
+
+    private int cells; // number of cells of the grid
+    private long[][] layers; // bitset of the rooms holding every kind, null until the kind is used
+    private int[] counts; // number of entities of every kind
+    private int[] first; // first entity in every cell, NONE if it is empty
+    private int[] kind, tag, cell; // of every entity; the kind is NONE once the entity is removed
+    private int[] next, previous; // entities before and after each one in the list of its room
+    private int free; // first removed entity, the others following through next
+    private int size; // number of entities given out so far, removed ones included
+
+    /**
+     * Constructor for objects of class OccupancyIndex, with nothing in any room.
+     * @param cells The number of cells of the grid (see MazeGrid.getLength).
+     */
+    public OccupancyIndex(int cells)
+    {
+        this.cells = cells;
+        layers = new long[DOT + 1][];
+        counts = new int[layers.length];
+        first = new int[cells];
+        Arrays.fill(first, NONE);
+        kind = new int[16];
+        tag = new int[kind.length];
+        cell = new int[kind.length];
+        next = new int[kind.length];
+        previous = new int[kind.length];
+        free = NONE;
+        size = 0;
+    }
+
+    /**
+     * Puts a new entity in a room.
+     * @param kind The kind of the entity, 0 or more.
+     * @param tag Anything telling it from the others of its kind.
+     * @param cell The packed index of the room.
+     * @return The number of the entity.
+     */
+    public int add(int kind, int tag, int cell)
+    {
+        if (kind < 0)
+            throw new IllegalArgumentException("Invalid kind: " + kind);
+
+        int id = free;
+        if (id != NONE) {
+            free = next[id];
+        }
+        else {
+            if (size == this.kind.length) {
+                this.kind = Arrays.copyOf(this.kind, size * 2);
+                this.tag = Arrays.copyOf(this.tag, size * 2);
+                this.cell = Arrays.copyOf(this.cell, size * 2);
+                next = Arrays.copyOf(next, size * 2);
+                previous = Arrays.copyOf(previous, size * 2);
+            }
+            id = size++;
+        }
+
+        this.kind[id] = kind;
+        this.tag[id] = tag;
+        layer(kind); // make sure the kind has a bitset and a count
+        counts[kind]++;
+        link(id, cell);
+        return id;
+    }
+
+    /**
+     * Moves an entity to another room.
+     * @param id The number of the entity.
+     * @param cell The packed index of the new room.
+     */
+    public void move(int id, int cell)
+    {
+        if (this.cell[id] == cell)
+            return;
+        unlink(id);
+        link(id, cell);
+    }
+
+    /**
+     * Takes an entity out of its room, leaving it in none until attach puts it in another one.
+     * Moving many entities in these two halves lets the rooms be split between threads:
+     * both only change the room of the entity and the entities in it, and the word of its bitsets
+     * holding that room, so entities in rooms of different words can be moved at the same time.
+     * @param id The number of the entity.
+     */
+    public void detach(int id)
+    {
+        unlink(id);
+    }
+
+    /**
+     * Puts an entity taken out of its room by detach in a room.
+     * @param id The number of the entity.
+     * @param cell The packed index of the room.
+     */
+    public void attach(int id, int cell)
+    {
+        link(id, cell);
+    }
+
+    /**
+     * Takes an entity out of the maze; its number may be given to a new entity.
+     * @param id The number of the entity.
+     */
+    public void remove(int id)
+    {
+        if (kind[id] == NONE)
+            return;
+        unlink(id);
+        counts[kind[id]]--;
+        kind[id] = NONE;
+        next[id] = free;
+        free = id;
+    }
+
+    /**
+     * @param kind A kind of entity.
+     * @param cell The packed index of a room.
+     * @return True if at least one entity of the kind is in the room.
+     */
+    public boolean has(int kind, int cell)
+    {
+        return kind < layers.length && layers[kind] != null && (layers[kind][cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @return The kinds below 64 that are in the room, kind k as bit k.
+     */
+    public long kindsAt(int cell)
+    {
+        long kinds = 0;
+        for (int k = 0; k < Math.min(layers.length, 64); k++)
+            if (has(k, cell))
+                kinds |= 1L << k;
+        return kinds;
+    }
+
+    /**
+     * Finds the next room holding an entity of one kind together with one of several others,
+     * like a player standing on a power-up, by intersecting their bitsets.
+     * @param kind A kind of entity.
+     * @param others The other kinds, below 64, kind k as bit k.
+     * @param from The packed index of the room to start looking from.
+     * @return The packed index of the first such room from there on, or NONE.
+     */
+    public int nextOverlap(int kind, long others, int from)
+    {
+        if (kind >= layers.length || layers[kind] == null || from >= cells)
+            return NONE;
+
+        long[] layer = layers[kind];
+        for (int word = from >>> 6; word < layer.length; word++) {
+            long union = 0;
+            for (long rest = others; rest != 0; rest &= rest - 1) {
+                int k = Long.numberOfTrailingZeros(rest);
+                if (k < layers.length && layers[k] != null)
+                    union |= layers[k][word];
+            }
+            long both = layer[word] & union;
+            if (word == from >>> 6)
+                both &= -1L << from; // skip the rooms before the first one
+            if (both != 0)
+                return word * 64 + Long.numberOfTrailingZeros(both);
+        }
+        return NONE;
+    }
+
+    /**
+     * @param kind A kind of entity.
+     * @param tag The tag of the entity.
+     * @param cell The packed index of a room.
+     * @return The number of the entity of that kind and tag in the room, or NONE if it is not there.
+     */
+    public int find(int kind, int tag, int cell)
+    {
+        if (!has(kind, cell))
+            return NONE;
+        for (int id = first[cell]; id != NONE; id = next[id])
+            if (this.kind[id] == kind && this.tag[id] == tag)
+                return id;
+        return NONE;
+    }
+
+    /**
+     * @param kind A kind of entity.
+     * @param cell The packed index of a room.
+     * @return The number of entities of the kind in the room.
+     */
+    public int count(int kind, int cell)
+    {
+        if (!has(kind, cell))
+            return 0;
+        int n = 0;
+        for (int id = first[cell]; id != NONE; id = next[id])
+            if (this.kind[id] == kind)
+                n++;
+        return n;
+    }
+
+    /**
+     * @param kind A kind of entity.
+     * @return The number of entities of the kind in the whole maze.
+     */
+    public int getCount(int kind) {return kind < counts.length ? counts[kind] : 0;}
+
+    /**
+     * @return The number of entities of all kinds in the whole maze.
+     */
+    public int getCount()
+    {
+        int n = 0;
+        for (int count : counts)
+            n += count;
+        return n;
+    }
+
+    /**
+     * The entities in a room, in no particular order, are getFirst(cell), then getNext of each one until NONE.
+     * @param cell The packed index of a room.
+     * @return The number of the first entity in the room, or NONE if it is empty.
+     */
+    public int getFirst(int cell) {return first[cell];}
+
+    /**
+     * @param id The number of an entity.
+     * @return The number of the next entity in its room, or NONE.
+     */
+    public int getNext(int id) {return next[id];}
+
+    /**
+     * @param id The number of an entity.
+     * @return Its kind, or NONE if it has been removed.
+     */
+    public int getKind(int id) {return kind[id];}
+
+    /**
+     * @param id The number of an entity.
+     * @return Its tag.
+     */
+    public int getTag(int id) {return tag[id];}
+
+    /**
+     * @param id The number of an entity.
+     * @return The packed index of its room.
+     */
+    public int getCell(int id) {return cell[id];}
+
+    /**
+     * @param kind A kind of entity.
+     * @return The bitset of the rooms holding the kind, made if the kind has none yet.
+     */
+    private long[] layer(int kind)
+    {
+        if (kind >= layers.length) {
+            int length = Math.max(kind + 1, layers.length * 2);
+            layers = Arrays.copyOf(layers, length);
+            counts = Arrays.copyOf(counts, length);
+        }
+        if (layers[kind] == null)
+            layers[kind] = new long[(cells + 63) >>> 6];
+        return layers[kind];
+    }
+
+    /**
+     * Puts an entity at the head of the list of a room and sets the bit of its kind.
+     * @param id The number of the entity.
+     * @param cell The packed index of the room.
+     */
+    private void link(int id, int cell)
+    {
+        this.cell[id] = cell;
+        previous[id] = NONE;
+        next[id] = first[cell];
+        if (first[cell] != NONE)
+            previous[first[cell]] = id;
+        first[cell] = id;
+        layers[kind[id]][cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * Takes an entity out of the list of its room, and clears the bit of its kind
+     * unless another entity of the same kind is still there.
+     * @param id The number of the entity.
+     */
+    private void unlink(int id)
+    {
+        int room = cell[id];
+        if (previous[id] != NONE)
+            next[previous[id]] = next[id];
+        else
+            first[room] = next[id];
+        if (next[id] != NONE)
+            previous[next[id]] = previous[id];
+
+        for (int other = first[room]; other != NONE; other = next[other])
+            if (kind[other] == kind[id])
+                return;
+        layers[kind[id]][room >>> 6] &= ~(1L << room);
+    }
+}
\ No newline at end of file
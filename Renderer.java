@@ -1,3 +1,8 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+
 /**
  * A renderer that draws items on the Canvas.
  * Adapted from the work of Hani Safadi, Michael Klling, and David J. Barnes.
@@ -13,14 +18,26 @@ public class Renderer
     private final int strokeSize = 3; // thickness of walls
     private boolean autoRefresh = false; // when true the room/canvas will autorefresh after any change
     // use true for testing as it slows down rendering.
+    private SplittableRandom rng; // random number stream for the position of the dots
 
     /**
      * Constructor for objects of class Renderer
      * @param mazeSize The size of the maze as an integer
      */
     public Renderer(int mazeSize)
+    {
+        this(mazeSize, new SplittableRandom());
+    }
+
+    /**
+     * Constructor for objects of class Renderer
+     * @param mazeSize The size of the maze as an integer
+     * @param rng The random number stream used to scatter the dots
+     */
+    public Renderer(int mazeSize, SplittableRandom rng)
     {
         // initialise instance variables
+        this.rng = rng;
         canvas = Canvas.getCanvas();
         canvasSize = Canvas.getSize();
         roomSize = canvasSize / mazeSize;
@@ -89,21 +106,21 @@ public class Renderer
         }
 
         // render the evil circles
-        if (r.isEvilInRoom(1) || r.isEvilInRoom(2) || r.isEvilInRoom(3))
+        if (r.isEvilInRoom())
         {
             Circle c = new Circle((int)(xLoc+0.22*roomSize),(int)(yLoc+0.22*roomSize), (int)(roomSize/1.5));
             c.makeVisible();
         }
 
         // render the triangles that kill evil circles
-        if (r.isKillEvilCircleInRoom(1) || r.isKillEvilCircleInRoom(2))
+        if (r.contains(OccupancyIndex.KILL_EVIL))
         {
             Triangle t = new Triangle(xLoc + roomSize / 2, yLoc + roomSize/4, roomSize - (strokeSize+7), roomSize - (strokeSize+7));
             t.makeVisible();
         }
 
         // render the triangles that make the player invincible
-        if (r.isInvincibilityInRoom(1) || r.isInvincibilityInRoom(2))
+        if (r.contains(OccupancyIndex.INVINCIBILITY))
         {
             Triangle t = new Triangle(xLoc + roomSize / 2, yLoc + roomSize/4, roomSize - (strokeSize+7), roomSize - (strokeSize+7));
             t.changeColor("blue");
@@ -111,7 +128,7 @@ public class Renderer
         }
 
         // render the triangles that double player speed
-        if (r.isDoubleSpeedInRoom(1) || r.isDoubleSpeedInRoom(2))
+        if (r.contains(OccupancyIndex.DOUBLE_SPEED))
         {
             Triangle t = new Triangle(xLoc + roomSize / 2, yLoc + roomSize/4, roomSize - (strokeSize+7), roomSize - (strokeSize+7));
             t.changeColor("red");
@@ -131,7 +148,7 @@ public class Renderer
         int xLoc = roomSize/2 + r.getY() * roomSize;
         int yLoc = roomSize/2 + r.getX() * roomSize;
 
-        Square s = new Square(xLoc + roomSize / 2 + (4 - Maze.randomNum(10)), yLoc + roomSize / 2 + (4 - Maze.randomNum(10)), strokeSize);
+        Square s = new Square(xLoc + roomSize / 2 + (4 - rng.nextInt(10)), yLoc + roomSize / 2 + (4 - rng.nextInt(10)), strokeSize);
         s.changeColor("magenta");
         s.makeVisible();
 
@@ -224,29 +241,105 @@ public class Renderer
 
     /**
      * Renders the whole maze.
+     * The walls are drawn into the background image of the canvas by drawMaze, as in rasterizeMaze,
+     * and only the rooms with someone or something in them are rendered on top.
      * @param m The maze to be rendered.
      */
     public void renderMaze(Maze m)
     {
         int size = m.getSize();
 
-        for(int i = 0; i < m.getSize()+2; i++)
-            for(int j = 0; j<m.getSize()+2; j++)
-                renderRoom(m.getRoom(i,j));
+        canvas.setBackgroundImage(rasterizeMaze(m, roomSize, strokeSize));
 
-        // rendering boundary rooms as solid walls
-        for (int x = 0; x < m.getSize()+2; x++) {
-            renderBoundaryRoom(m.getRoom(x,0));
-            renderBoundaryRoom(m.getRoom(x,size+1));
+        for (int i = 1; i <= size; i++) {
+            for (int j = 1; j <= size; j++) {
+                Room r = m.getRoom(i, j);
+                if (r.isPersonInRoom(1) || r.isPersonInRoom(2) || r.isEvilInRoom() || r.contains(OccupancyIndex.KILL_EVIL)
+                    || r.contains(OccupancyIndex.INVINCIBILITY) || r.contains(OccupancyIndex.DOUBLE_SPEED))
+                    renderRoom(r);
+            }
         }
-        for (int y = 0; y < m.getSize()+2; y++) {
-            renderBoundaryRoom(m.getRoom(0,y));
-            renderBoundaryRoom(m.getRoom(size+1,y));
+
+        if(autoRefresh) refresh();
+    }
+
+    /**
+     * Draws the whole maze into an image, exactly like renderMaze draws it on the canvas,
+     * but without touching the canvas, so it can be done ahead of time on another thread.
+     * The image can then be shown with Canvas.setBackgroundImage.
+     * @param m The maze to be rendered.
+     * @return An image of the maze, the size of the canvas.
+     */
+    public static BufferedImage rasterizeMaze(Maze m)
+    {
+        return rasterizeMaze(m, Canvas.getSize() / (m.getSize() + 2), 3);
+    }
+
+    /**
+     * Draws the whole maze into a white image the size of the canvas.
+     * @param m The maze to be rendered.
+     * @param roomSize The size of a room in pixels.
+     * @param strokeSize The thickness of the walls in pixels.
+     * @return An image of the maze.
+     */
+    private static BufferedImage rasterizeMaze(Maze m, int roomSize, int strokeSize)
+    {
+        BufferedImage image = new BufferedImage(Canvas.getSize() + 2, Canvas.getSize() + 2, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.white);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        drawMaze(m, g, roomSize, strokeSize);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Draws the walls, the empty rooms, the boundary and the exit room of a maze,
+     * the same as renderRoom, renderBoundaryRoom and renderExitRoom draw them with shapes.
+     * Both renderMaze and rasterizeMaze draw through here, so the two can't drift apart.
+     * @param m The maze to be drawn.
+     * @param g Where to draw it, such as the graphics of an image.
+     * @param roomSize The size of a room in pixels.
+     * @param strokeSize The thickness of the walls in pixels.
+     */
+    private static void drawMaze(Maze m, Graphics2D g, int roomSize, int strokeSize)
+    {
+        int size = m.getSize();
+
+        // the walls and the empty inside of every room
+        for (int i = 0; i < size+2; i++) {
+            for (int j = 0; j < size+2; j++) {
+                int xLoc = roomSize/2 + j * roomSize;
+                int yLoc = roomSize/2 + i * roomSize;
+                int exits = m.getExits(i, j);
+
+                g.setColor(Color.black);
+                if ((exits & MazeGrid.NORTH) == 0) g.fillRect(xLoc, yLoc, roomSize + strokeSize - 1, strokeSize);
+                if ((exits & MazeGrid.SOUTH) == 0) g.fillRect(xLoc, yLoc + roomSize, roomSize + strokeSize - 1, strokeSize);
+                if ((exits & MazeGrid.EAST) == 0) g.fillRect(xLoc + roomSize, yLoc, strokeSize, roomSize + strokeSize - 1);
+                if ((exits & MazeGrid.WEST) == 0) g.fillRect(xLoc, yLoc, strokeSize, roomSize + strokeSize - 1);
+
+                g.setColor(Color.white);
+                g.fillRect(xLoc + (strokeSize+1), yLoc + (strokeSize+1), roomSize - strokeSize*2, roomSize - strokeSize*2);
+            }
         }
 
-        renderExitRoom(m);
+        // the boundary rooms as solid walls
+        g.setColor(Color.black);
+        for (int i = 0; i < size+2; i++) {
+            for (int j = 0; j < size+2; j++) {
+                if (i == 0 || j == 0 || i == size+1 || j == size+1)
+                    g.fillRect(roomSize/2 + j * roomSize, roomSize/2 + i * roomSize, roomSize, roomSize);
+            }
+        }
 
-        if(autoRefresh) refresh();
+        // the exit room, as in renderExitRoom
+        int xLoc = roomSize/2 + (size+1) * roomSize;
+        int yLoc = roomSize/2 + size * roomSize;
+        g.setColor(Color.white);
+        g.fillRect(xLoc - 10, yLoc, roomSize, roomSize);
+        g.fillRect(xLoc + roomSize - strokeSize, yLoc, roomSize, roomSize);
+        g.fillRect(xLoc, yLoc, roomSize, roomSize);
     }
 
     /**
@@ -0,0 +1,192 @@
+import java.util.Arrays;
+
+/**
+ * A space-time reservation table: which enemy has claimed each room at each tick of the next few,
+ * so that enemies planning their moves one after another (see EnemySystem.setCooperation)
+ * can keep out of each other's way instead of piling into the same corridor.
+ *
+ * The reservations are kept in two arrays, one for the (room, tick) keys and one for the owners,
+ * with open addressing and linear probing, and the arrays are never more than half full, so a lookup
+ * is a multiplication and one or two probes in a row. A claim given up with release is removed by moving
+ * the claims probed past it back, so no deleted slots are left to slow the lookups down. The whole table
+ * is cleared before the next round of planning, in time proportional to the reservations it can hold.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class ReservationTable
+{
+    public static final int NONE = -1; // owner of a free slot
+
+    private static final long EMPTY = -1; // key of an empty slot; real keys are never negative
+
+    private long[] keys; // (tick << 32) | room of every reservation, EMPTY if the slot is free
+    private int[] owners; // the owner of every reservation
+    private int shift; // 64 - log2(slots), so the top bits of a hash pick the slot
+    private int size; // number of reservations
+
+    /**
+     * Constructor for objects of class ReservationTable.
+     * @param capacity The number of reservations expected; the table grows if more are made.
+     */
+    public ReservationTable(int capacity)
+    {
+        resize(capacity);
+    }
+
+    /**
+     * Makes sure the table can hold a number of reservations, clearing it in any case.
+     * @param capacity The number of reservations that will be made before the next clear.
+     */
+    public void clear(int capacity)
+    {
+        if (capacity * 2L > keys.length)
+            resize(capacity);
+        else
+            clear();
+    }
+
+    /**
+     * Removes every reservation.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Claims a room at a tick, unless somebody else has claimed it already.
+     * @param cell The packed index of the room.
+     * @param tick The tick.
+     * @param owner The number of the one claiming it, 0 or more.
+     * @return True if the room is now reserved for the owner, false if it was taken.
+     */
+    public boolean reserve(int cell, long tick, int owner)
+    {
+        if ((size + 1) * 2L > keys.length)
+            grow();
+
+        long key = key(cell, tick);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key)
+                return owners[slot] == owner;
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        owners[slot] = owner;
+        size++;
+        return true;
+    }
+
+    /**
+     * Gives up a claim on a room at a tick, so that somebody else can claim it.
+     * @param cell The packed index of the room.
+     * @param tick The tick.
+     * @param owner The number of the one who claimed it.
+     * @return True if the claim was given up, false if the owner had not claimed the room.
+     */
+    public boolean release(int cell, long tick, int owner)
+    {
+        long key = key(cell, tick);
+        int mask = keys.length - 1;
+        int slot = slot(key);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        if (owners[slot] != owner)
+            return false;
+
+        // move back every claim after the hole whose probing started at or before the hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            if (((next - slot(keys[next])) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                owners[hole] = owners[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+        return true;
+    }
+
+    /**
+     * @param cell The packed index of a room.
+     * @param tick A tick.
+     * @return The owner of the room at that tick, or NONE if it is free.
+     */
+    public int getOwner(int cell, long tick)
+    {
+        long key = key(cell, tick);
+        for (int slot = slot(key); keys[slot] != EMPTY; slot = (slot + 1) & (keys.length - 1))
+            if (keys[slot] == key)
+                return owners[slot];
+        return NONE;
+    }
+
+    /**
+     * @return The number of reservations in the table.
+     */
+    public int size() {return size;}
+
+    /**
+     * @return The number of reservations the table holds before it grows.
+     */
+    public int getCapacity() {return keys.length / 2;}
+
+    /**
+     * @param cell The packed index of a room.
+     * @param tick A tick.
+     * @return The key of the room at that tick.
+     */
+    private static long key(int cell, long tick)
+    {
+        return (tick << 32) | cell;
+    }
+
+    /**
+     * @param key The key of a reservation.
+     * @return The slot its probing starts from, from the top bits of a Fibonacci hash.
+     */
+    private int slot(long key)
+    {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * Replaces the arrays with empty ones, at most half full with the given number of reservations.
+     * @param capacity The number of reservations.
+     */
+    private void resize(int capacity)
+    {
+        int slots = Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) << 1;
+        keys = new long[slots];
+        owners = new int[slots];
+        shift = 64 - Integer.numberOfTrailingZeros(slots);
+        clear();
+    }
+
+    /**
+     * Doubles the number of slots, keeping every reservation.
+     */
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        int[] oldOwners = owners;
+        resize(keys.length);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY)
+                continue;
+            int slot = slot(oldKeys[i]);
+            while (keys[slot] != EMPTY)
+                slot = (slot + 1) & (keys.length - 1);
+            keys[slot] = oldKeys[i];
+            owners[slot] = oldOwners[i];
+            size++;
+        }
+    }
+}
\ No newline at end of file
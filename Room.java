@@ -6,8 +6,11 @@
  *
  * A "Room" represents one location in the scenery of the game.  It is 
  * connected to other rooms via exits.  The exits are labelled north, 
- * east, south, west.  For each direction, the room stores a reference
- * to the neighboring room, or null if there is no exit in that direction.
+ * east, south, west.  For each direction, the room returns the neighboring
+ * room, or null if there is no exit in that direction.
+ * The walls themselves live in the maze's MazeGrid, and the players and items
+ * inside the room in its OccupancyIndex; a room is only a thin view over one of its cells.
+ * Every change of what is inside the room is reported to the maze, which keeps a hash of its state.
  * Adapted from the work of Hani Safadi, Michael Kölling, and David J. Barnes.
  * 
  * @author https://github.com/f-z
@@ -15,46 +18,28 @@
  */
 public class Room 
 {
+    private Maze maze; // the maze this room belongs to
     private int x, y; // represent room location in the maze (row, col)
-    private Room northExit;
-    private Room southExit;
-    private Room eastExit;
-    private Room westExit;
-    private boolean[] person; // players
     private boolean exitRoom; // is this room the final exit room?
-    private boolean[] evilCircle = {false, false, false}; // red circles that represent the evil demons roaming the maze randomly
-    private boolean[] killEvilCircle; // green triangle power-up that kills an evil circle
-    private boolean[] becomeInvincible;// blue triangle power-up that makes the player undestructible for 1 minute
-    private boolean[] doubleSpeed;
     
     /**
-     * Create a room described "description". Initially, it has
-     * no exits. "description" is something like "a kitchen" or
-     * "an open court yard".
-     * @param description The room's description.
+     * Create a view of the room at (x, y) in the given maze.
+     * @param maze The maze that holds the walls of this room.
+     * @param x The row of the room.
+     * @param y The column of the room.
      */
-    public Room(int x, int y)
+    public Room(Maze maze, int x, int y)
     {
+        this.maze = maze;
         this.x = x;
         this.y = y;
-        person = new boolean[2];
-        doubleSpeed = new boolean[2];
-        killEvilCircle = new boolean[2];
-        becomeInvincible = new boolean[2];
-        
-        for (int i = 0; i < 2; i++) {
-            person[i] = false;
-            doubleSpeed[i] = false;
-            killEvilCircle[i] = false;
-            becomeInvincible[i] = false;
-        }
-        
         exitRoom= false;
     }
 
     /**
      * Define the exits of this room.  Every direction either leads
-     * to another room or is null (no exit there).
+     * to another room or is null (no new exit there).
+     * Only this side of each wall is opened.
      * @param north The north exit.
      * @param east The east east.
      * @param south The south exit.
@@ -63,40 +48,50 @@ public class Room
     public void setExits(Room north, Room east, Room south, Room west) 
     {
         if(north != null)
-            northExit = north;
+            maze.addExit(x, y, MazeGrid.NORTH);
         if(east != null)
-            eastExit = east;
+            maze.addExit(x, y, MazeGrid.EAST);
         if(south != null)
-            southExit = south;
+            maze.addExit(x, y, MazeGrid.SOUTH);
         if(west != null)
-            westExit = west;
+            maze.addExit(x, y, MazeGrid.WEST);
     }
 
     /**
      * @param player The number of the player (1 or 2).
      * @return True if the player is currently in this room.
      */
-    public boolean isPersonInRoom(int player) {return person[player-1];}
+    public boolean isPersonInRoom(int player) {return isInRoom(OccupancyIndex.PLAYER, player);}
 
-    public boolean isEvilInRoom(int evil) {return evilCircle[evil-1];}
+    /**
+     * The evil circles themselves are kept by the EnemySystem of the maze.
+     * @return True if at least one evil circle is currently in this room.
+     */
+    public boolean isEvilInRoom() {return contains(OccupancyIndex.EVIL);}
 
     /**
-     * @param i The number of one of the power-ups that kills an evil circle (1 or 2).
+     * @param i The number of one of the power-ups that kills an evil circle (1, 2, ...).
      * @return True if the power-up that kills an evil circle is currently in this room.
      */
-    public boolean isKillEvilCircleInRoom(int i) {return killEvilCircle[i - 1];}
+    public boolean isKillEvilCircleInRoom(int i) {return isInRoom(OccupancyIndex.KILL_EVIL, i);}
 
     /**
-     * @param i The number of one of the power-ups that makes the player invincible (1 or 2).
+     * @param i The number of one of the power-ups that makes the player invincible (1, 2, ...).
      * @return True if the invincibility power-up that makes the player indestructible is currently in this room.
      */
-    public boolean isInvincibilityInRoom(int i) {return becomeInvincible[i - 1];}
+    public boolean isInvincibilityInRoom(int i) {return isInRoom(OccupancyIndex.INVINCIBILITY, i);}
 
    /**
-     * @param i The number of one of the power-ups that doubles player speed (1 or 2).
+     * @param i The number of one of the power-ups that doubles player speed (1, 2, ...).
      * @return True if the power-up is currently in this room.
      */
-    public boolean isDoubleSpeedInRoom(int i) {return doubleSpeed[i - 1];}
+    public boolean isDoubleSpeedInRoom(int i) {return isInRoom(OccupancyIndex.DOUBLE_SPEED, i);}
+
+    /**
+     * @param kind A kind of entity of OccupancyIndex, like OccupancyIndex.KILL_EVIL.
+     * @return True if at least one entity of the kind, whatever its number, is currently in this room.
+     */
+    public boolean contains(int kind) {return maze.getOccupancy(x, y).has(kind, cell());}
 
     /**
      * Setter method for players. 
@@ -104,46 +99,62 @@ public class Room
      * @param i The number of the player (1 or 2).
      * @param isInRoom True if the player is in the current room.
      */
-    public void setPersonInRoom(int i, boolean isInRoom) {person[i - 1] = isInRoom;}
+    public void setPersonInRoom(int i, boolean isInRoom) {setInRoom(OccupancyIndex.PLAYER, i, isInRoom);}
 
-    /**
-     * Setter method for evil circles. 
-     * Assigns a value of true if the evil is in the room or false otherwise.
-     * @param i An int that represents if it is evil 1, 2, or 3.
-     * @param isInRoom A boolean that is true if the evil is in the room.
-     */
-    public void setEvilInRoom(int i, boolean isInRoom) {
-        evilCircle[i - 1] = isInRoom;
-    }
- 
     /**
      * Setter method for the power-up that kills evil circles.
      * Assigns a value of true if the power-up is in the room or false otherwise.
-     * @param i An int that represents if it is power-up number 1 or 2.
+     * @param i An int that represents the number of the power-up (1, 2, ...).
      * @param isInRoom A boolean that is true if the power-up is in the room.
      */
-    public void setKillEvilCircleInRoom(int i, boolean isInRoom) {
-        killEvilCircle[i - 1] = isInRoom;
-    }
+    public void setKillEvilCircleInRoom(int i, boolean isInRoom) {setInRoom(OccupancyIndex.KILL_EVIL, i, isInRoom);}
 
     /**
      * Setter method for the power-up that makes the player invincible.
      * Assigns a value of true if the power-up is in the room or false otherwise.
-     * @param i An int that represents if it is power-up number 1 or 2.
+     * @param i An int that represents the number of the power-up (1, 2, ...).
      * @param isInRoom A boolean that is true if the power-up is in the room.
      */
-    public void setInvincibilityInRoom(int i, boolean isInRoom) {
-        becomeInvincible[i - 1] = isInRoom;
-    }
+    public void setInvincibilityInRoom(int i, boolean isInRoom) {setInRoom(OccupancyIndex.INVINCIBILITY, i, isInRoom);}
 
     /**
      * Setter method for Double Speed 1.
      * assigns a value of true if the Double Speed 1 Power-up is in the room or false otherwise
      */
-    public void setDoubleSpeedInRoom(int i, boolean isInRoom) {
-        doubleSpeed[i - 1] = isInRoom;
+    public void setDoubleSpeedInRoom(int i, boolean isInRoom) {setInRoom(OccupancyIndex.DOUBLE_SPEED, i, isInRoom);}
+
+    /**
+     * @param kind A kind of entity of OccupancyIndex.
+     * @param tag The number of the entity.
+     * @return True if that entity is currently in this room.
+     */
+    private boolean isInRoom(int kind, int tag) {return maze.getOccupancy(x, y).find(kind, tag, cell()) != OccupancyIndex.NONE;}
+
+    /**
+     * Puts an entity in this room or takes it out, reporting the change to the hash of the maze.
+     * @param kind A kind of entity of OccupancyIndex.
+     * @param tag The number of the entity.
+     * @param isInRoom True if the entity is in the room.
+     */
+    private void setInRoom(int kind, int tag, boolean isInRoom)
+    {
+        OccupancyIndex occupancy = maze.getOccupancy(x, y);
+        int id = occupancy.find(kind, tag, cell());
+        if ((id != OccupancyIndex.NONE) == isInRoom)
+            return;
+
+        if (isInRoom)
+            occupancy.add(kind, tag, cell());
+        else
+            occupancy.remove(id);
+        maze.toggleFeature(x, y, ZobristHash.entity(kind, tag));
     }
 
+    /**
+     * @return The number of this room in the occupancy index of the maze.
+     */
+    private int cell() {return maze.getCell(x, y);}
+
     // Setter and getter methods
     public int getX() {return x;}
 
@@ -153,25 +164,38 @@ public class Room
      * Get the room north of the current room.
      * @return Returns the room in the north, but null if there is a wall on the north side (if there is no exit that way).
      */
-    public Room getNorthExit() {return northExit;} 
+    public Room getNorthExit() {return getExit(MazeGrid.NORTH, x-1, y);} 
 
     /**
      * Get the room south of the current room.
      * @return Returns the room in the south, but null if there is a wall on the south side (if there is no exit that way).
      */
-    public Room getSouthExit() {return southExit;}
+    public Room getSouthExit() {return getExit(MazeGrid.SOUTH, x+1, y);}
 
      /**
      * Get the room east of the current room.
      * @return Returns the room in the east, but null if there is a wall on the east side (if there is no exit that way).
      */
-    public Room getEastExit() {return eastExit;}
+    public Room getEastExit() {return getExit(MazeGrid.EAST, x, y+1);}
 
      /**
      * Get the room west of the current room.
      * @return Returns the room in the west, but null if there is a wall on the west side (if there is no exit that way).
      */
-    public Room getWestExit() {return westExit;}
+    public Room getWestExit() {return getExit(MazeGrid.WEST, x, y-1);}
+
+    /**
+     * @param direction The exit bit to look up in the maze grid.
+     * @param nx The row of the neighboring room in that direction.
+     * @param ny The column of the neighboring room in that direction.
+     * @return The neighboring room, or null if there is a wall that way.
+     */
+    private Room getExit(int direction, int nx, int ny)
+    {
+        if ((maze.getExits(x, y) & direction) == 0)
+            return null;
+        return maze.getRoom(nx, ny);
+    }
 
     /**
      * @return Returns true if the cuurent room is the exit room at the end of the game.
@@ -0,0 +1,100 @@
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Plays back a search recorded by MazeSolver.traceDFS on the canvas, at a fixed frame rate.
+ * The trail of the solver is drawn into one transparent overlay image (see Canvas.setOverlayImage):
+ * every frame marks the rooms entered since the last frame with a yellow circle, like
+ * Renderer.renderSolution, clears the rooms left by backtracking, and then refreshes the canvas once.
+ * No shape is created for any room, so the time the playback takes is the number of frames
+ * divided by the frame rate, whatever the number of rooms drawn in each frame.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class SolverAnimator
+{
+    private Canvas canvas;
+    private MazeGrid grid; // the grid the trace was recorded on
+    private int roomSize; // size of a room on canvas, as in Renderer
+    private int framesPerSecond;
+    private int movesPerFrame; // moves of the trace drawn in each frame
+    private BufferedImage overlay; // the trail of the solver
+    private int frames; // frames drawn by the last playback
+
+    /**
+     * Constructor for objects of class SolverAnimator.
+     * @param canvas The canvas to play on.
+     * @param grid The grid the trace was recorded on.
+     * @param framesPerSecond The number of frames drawn every second.
+     * @param movesPerFrame The number of moves of the trace drawn in each frame.
+     */
+    public SolverAnimator(Canvas canvas, MazeGrid grid, int framesPerSecond, int movesPerFrame)
+    {
+        if (framesPerSecond < 1 || movesPerFrame < 1)
+            throw new IllegalArgumentException("Invalid playback speed: " + framesPerSecond + " frames/sec, " + movesPerFrame + " moves/frame");
+
+        this.canvas = canvas;
+        this.grid = grid;
+        this.framesPerSecond = framesPerSecond;
+        this.movesPerFrame = movesPerFrame;
+        roomSize = Canvas.getSize() / (grid.getRows() + 2);
+        overlay = new BufferedImage(Canvas.getSize() + 2, Canvas.getSize() + 2, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Plays a trace from the start, returning when its last move has been drawn.
+     * The trail stays on the canvas until Canvas.clear is called.
+     * @param trace The moves recorded by MazeSolver.traceDFS.
+     */
+    public void play(int[] trace)
+    {
+        long frameTime = 1000000000L / framesPerSecond;
+        long next = System.nanoTime();
+        frames = 0;
+        canvas.setOverlayImage(overlay);
+
+        Graphics2D g = overlay.createGraphics();
+        Composite paint = g.getComposite();
+        g.setColor(new Color(255, 230, 0)); // the yellow of Canvas
+        int diameter = (int)(roomSize/1.5); // the circles of Renderer.renderSolution
+
+        for (int first = 0; first < trace.length; first += movesPerFrame) {
+            // draw every move of the frame into the overlay, then show the frame once
+            int last = Math.min(first + movesPerFrame, trace.length);
+            for (int i = first; i < last; i++) {
+                int cell = trace[i] >= 0 ? trace[i] : ~trace[i];
+                int xLoc = (int)(roomSize/2 + grid.getY(cell) * roomSize + 0.22*roomSize);
+                int yLoc = (int)(roomSize/2 + grid.getX(cell) * roomSize + 0.22*roomSize);
+                if (trace[i] >= 0) {
+                    g.setComposite(paint);
+                    g.fillOval(xLoc, yLoc, diameter, diameter);
+                }
+                else {
+                    // a room left by backtracking loses its circle
+                    g.setComposite(AlphaComposite.Clear);
+                    g.fillRect(xLoc, yLoc, diameter + 1, diameter + 1);
+                }
+            }
+            canvas.refresh();
+            frames++;
+
+            // wait for the next frame; a late frame is not made up for by rushing the next ones
+            next += frameTime;
+            long wait = next - System.nanoTime();
+            if (wait > 0)
+                canvas.wait((int) (wait / 1000000));
+            else
+                next = System.nanoTime();
+        }
+        g.dispose();
+    }
+
+    /**
+     * @return The number of frames drawn by the last playback.
+     */
+    public int getFrames() {return frames;}
+}
\ No newline at end of file
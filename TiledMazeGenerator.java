@@ -0,0 +1,188 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates a perfect maze in parallel by splitting the grid into square tiles.
+ * Every tile is carved independently with DepthFirstMazeGenerator on a ForkJoinPool,
+ * then the tiles are stitched together: a random spanning tree is picked over the tiles,
+ * and one wall is knocked down on the border between every pair of tiles joined by it.
+ * Since every tile is a perfect maze and the openings form a tree over the tiles,
+ * there is exactly one path between any two rooms of the whole maze.
+ *
+ * Each tile draws from its own stream, split off the given one in a fixed order,
+ * so the same seed gives the same maze no matter how many threads carve it.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class TiledMazeGenerator implements MazeGenerator
+{
+    private int tileSize; // number of rooms on each side of a tile
+    private ForkJoinPool pool; // pool the tiles are carved on
+    private boolean verify; // check the result with MazeGrid.isPerfect after stitching
+
+    /**
+     * Constructor for objects of class TiledMazeGenerator, using the common pool.
+     * @param tileSize The number of rooms on each side of a tile.
+     */
+    public TiledMazeGenerator(int tileSize)
+    {
+        this(tileSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for objects of class TiledMazeGenerator.
+     * @param tileSize The number of rooms on each side of a tile.
+     * @param pool The pool the tiles are carved on.
+     */
+    public TiledMazeGenerator(int tileSize, ForkJoinPool pool)
+    {
+        if (tileSize < 1)
+            throw new IllegalArgumentException("Invalid tile size: " + tileSize);
+
+        this.tileSize = tileSize;
+        this.pool = pool;
+        verify = true;
+    }
+
+    /**
+     * Carves a perfect maze over the whole grid.
+     * @param grid The grid to carve, with no exits yet.
+     * @param rng The random number stream the tiles and the stitching are derived from.
+     * @throws IllegalStateException If verification is on and the result is not a perfect maze.
+     */
+    public void generate(MazeGrid grid, SplittableRandom rng)
+    {
+        int tileRows = (grid.getRows() + tileSize - 1) / tileSize;
+        int tileCols = (grid.getCols() + tileSize - 1) / tileSize;
+
+        // one seed per tile, drawn up front so the result does not depend on the scheduling
+        long[] seeds = new long[tileRows * tileCols];
+        for (int t = 0; t < seeds.length; t++)
+            seeds[t] = rng.nextLong();
+
+        pool.invoke(new CarveTiles(grid, tileCols, seeds, 0, seeds.length));
+
+        stitch(grid, tileRows, tileCols, rng);
+
+        if (verify && !grid.isPerfect())
+            throw new IllegalStateException("Tiled generation did not produce a perfect maze");
+    }
+
+    /**
+     * Joins the tiles along a random spanning tree of the tile grid, found depth-first.
+     * @param grid The grid with every tile carved.
+     * @param tileRows The number of rows of tiles.
+     * @param tileCols The number of columns of tiles.
+     * @param rng The random number stream used to pick the tree and the openings.
+     */
+    private void stitch(MazeGrid grid, int tileRows, int tileCols, SplittableRandom rng)
+    {
+        int tiles = tileRows * tileCols;
+        boolean[] joined = new boolean[tiles];
+        int[] stack = new int[tiles];
+        int[] unvisited = new int[4];
+        int depth = 0;
+
+        joined[0] = true;
+        stack[depth++] = 0;
+
+        while (depth > 0) {
+            int tile = stack[depth - 1];
+            int tx = tile / tileCols;
+            int ty = tile % tileCols;
+
+            int count = 0;
+            if (ty + 1 < tileCols && !joined[tile + 1]) unvisited[count++] = MazeGrid.EAST;
+            if (tx + 1 < tileRows && !joined[tile + tileCols]) unvisited[count++] = MazeGrid.SOUTH;
+            if (ty > 0 && !joined[tile - 1]) unvisited[count++] = MazeGrid.WEST;
+            if (tx > 0 && !joined[tile - tileCols]) unvisited[count++] = MazeGrid.NORTH;
+
+            if (count == 0) {
+                depth--;
+                continue;
+            }
+
+            int direction = unvisited[rng.nextInt(count)];
+            int next;
+            if (direction == MazeGrid.EAST || direction == MazeGrid.WEST) {
+                // open a random room on the vertical border between the two tiles
+                int left = direction == MazeGrid.EAST ? ty : ty - 1;
+                int top = tx * tileSize + 1;
+                int bottom = Math.min(top + tileSize - 1, grid.getRows());
+                int x = top + rng.nextInt(bottom - top + 1);
+                grid.carve(grid.index(x, (left + 1) * tileSize), MazeGrid.EAST);
+                next = direction == MazeGrid.EAST ? tile + 1 : tile - 1;
+            }
+            else {
+                // open a random room on the horizontal border between the two tiles
+                int upper = direction == MazeGrid.SOUTH ? tx : tx - 1;
+                int left = ty * tileSize + 1;
+                int right = Math.min(left + tileSize - 1, grid.getCols());
+                int y = left + rng.nextInt(right - left + 1);
+                grid.carve(grid.index((upper + 1) * tileSize, y), MazeGrid.SOUTH);
+                next = direction == MazeGrid.SOUTH ? tile + tileCols : tile - tileCols;
+            }
+
+            joined[next] = true;
+            stack[depth++] = next;
+        }
+    }
+
+    /**
+     * @return The name of the algorithm.
+     */
+    public String getName() {return "tiled depth-first (" + tileSize + ")";}
+
+    /**
+     * @param verify True to check every generated maze with MazeGrid.isPerfect (the default).
+     */
+    public void setVerify(boolean verify) {this.verify = verify;}
+
+    /**
+     * @return True if every generated maze is checked with MazeGrid.isPerfect.
+     */
+    public boolean getVerify() {return verify;}
+
+    /**
+     * Carves a range of tiles, splitting it in halves until a single tile is left.
+     */
+    private class CarveTiles extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private MazeGrid grid;
+        private int tileCols;
+        private long[] seeds;
+        private int from, to; // range of tiles, in row order
+
+        public CarveTiles(MazeGrid grid, int tileCols, long[] seeds, int from, int to)
+        {
+            this.grid = grid;
+            this.tileCols = tileCols;
+            this.seeds = seeds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CarveTiles(grid, tileCols, seeds, from, middle),
+                          new CarveTiles(grid, tileCols, seeds, middle, to));
+                return;
+            }
+
+            int top = (from / tileCols) * tileSize + 1;
+            int left = (from % tileCols) * tileSize + 1;
+            int bottom = Math.min(top + tileSize - 1, grid.getRows());
+            int right = Math.min(left + tileSize - 1, grid.getCols());
+
+            new DepthFirstMazeGenerator().carve(grid, top, left, bottom, right, top, left,
+                                                new SplittableRandom(seeds[from]));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of values keyed by 64-bit hashes (see ZobristHash), safe to share between threads,
+ * used as a transposition table by bots that look ahead, and to remember solved mazes.
+ *
+ * The table has a fixed number of slots, a power of two, and every hash goes to one slot,
+ * picked by the low bits of its two halves xored together. A new entry simply replaces
+ * whatever was in its slot, so the table never grows and needs no locks: each slot is
+ * one reference, read and written atomically.
+ * An entry keeps its whole hash, so a lookup only returns a value stored under the same hash.
+ * Values must not be changed once stored, since other threads may be reading them.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class TranspositionTable<V>
+{
+    private AtomicReferenceArray<Entry<V>> slots;
+    private int mask; // slots - 1
+    private LongAdder hits, misses;
+
+    /**
+     * Constructor for objects of class TranspositionTable.
+     * @param capacity The number of entries kept, rounded up to a power of two.
+     */
+    public TranspositionTable(int capacity)
+    {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        slots = new AtomicReferenceArray<Entry<V>>(size);
+        mask = size - 1;
+        hits = new LongAdder();
+        misses = new LongAdder();
+    }
+
+    /**
+     * @param hash The hash of a state.
+     * @return The value stored for the state, or null if there is none or it was replaced.
+     */
+    public V get(long hash)
+    {
+        Entry<V> entry = slots.get(slot(hash));
+        if (entry != null && entry.hash == hash) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a value for a state, replacing whatever was in its slot.
+     * @param hash The hash of the state.
+     * @param value The value, which must not be changed afterwards.
+     */
+    public void put(long hash, V value)
+    {
+        slots.set(slot(hash), new Entry<V>(hash, value));
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < slots.length(); i++)
+            slots.set(i, null);
+    }
+
+    /**
+     * @return The number of entries the table can hold.
+     */
+    public int getCapacity() {return slots.length();}
+
+    /**
+     * @return The number of lookups that found a value.
+     */
+    public long getHits() {return hits.sum();}
+
+    /**
+     * @return The number of lookups that found nothing.
+     */
+    public long getMisses() {return misses.sum();}
+
+    /**
+     * @param hash The hash of a state.
+     * @return The slot of the state, from both halves of the hash.
+     */
+    private int slot(long hash)
+    {
+        return (int) ((hash ^ (hash >>> 32)) & mask);
+    }
+
+    /**
+     * One stored value and the full hash of its state.
+     */
+    private static class Entry<V>
+    {
+        final long hash;
+        final V value;
+
+        Entry(long hash, V value)
+        {
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+}
\ No newline at end of file
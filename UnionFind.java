@@ -0,0 +1,65 @@
+/**
+ * A disjoint-set forest over the integers 0 to n-1, stored in primitive arrays.
+ * Uses path compression (halving) and union by rank, so every operation
+ * takes nearly constant amortized time.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class UnionFind
+{
+    private int[] parent; // parent of every element, roots are their own parent
+    private byte[] rank; // upper bound on the height of every root's tree
+
+    /**
+     * Constructor for objects of class UnionFind, with every element in a set of its own.
+     * @param n The number of elements.
+     */
+    public UnionFind(int n)
+    {
+        parent = new int[n];
+        rank = new byte[n];
+
+        for (int i = 0; i < n; i++)
+            parent[i] = i;
+    }
+
+    /**
+     * @param i An element.
+     * @return The root of the set containing the element.
+     */
+    public int find(int i)
+    {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Merges the sets containing two elements.
+     * @param a An element.
+     * @param b Another element.
+     * @return True if the elements were in different sets before the call.
+     */
+    public boolean union(int a, int b)
+    {
+        a = find(a);
+        b = find(b);
+        if (a == b)
+            return false;
+
+        if (rank[a] < rank[b]) {
+            parent[a] = b;
+        }
+        else if (rank[a] > rank[b]) {
+            parent[b] = a;
+        }
+        else {
+            parent[b] = a;
+            rank[a]++;
+        }
+        return true;
+    }
+}
\ No newline at end of file
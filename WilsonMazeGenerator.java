@@ -0,0 +1,67 @@
+import java.util.SplittableRandom;
+
+/**
+ * Wilson's maze generation algorithm.
+ * Grows the maze from a single room by loop-erased random walks: from every room that is not
+ * part of the maze yet, walk randomly until the maze is hit, remembering only the last direction
+ * taken out of every room, then carve the loop-free path that is left.
+ * The result is a uniform spanning tree, so every possible perfect maze is equally likely,
+ * which gives an unbiased mix of corridors and dead ends.
+ * Algorithm described at http://weblog.jamisbuck.org/2011/1/20/maze-generation-wilson-s-algorithm.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class WilsonMazeGenerator implements MazeGenerator
+{
+    /**
+     * Carves a perfect maze over the whole grid.
+     * @param grid The grid to carve, with no exits yet.
+     * @param rng The random number stream used for the walks.
+     */
+    public void generate(MazeGrid grid, SplittableRandom rng)
+    {
+        byte[] walk = new byte[grid.getLength()]; // last direction taken out of every room by the current walk
+        long[] inMaze = new long[(grid.getLength() + 63) >>> 6];
+        int[] open = new int[4];
+
+        // the maze starts from the top left room
+        int root = grid.index(1, 1);
+        inMaze[root >>> 6] |= 1L << root;
+
+        for (int x = 1; x <= grid.getRows(); x++) {
+            for (int y = 1; y <= grid.getCols(); y++) {
+                int start = grid.index(x, y);
+                if ((inMaze[start >>> 6] & (1L << start)) != 0)
+                    continue;
+
+                // random walk until the maze is hit; revisiting a room overwrites its direction, erasing the loop
+                int cell = start;
+                while ((inMaze[cell >>> 6] & (1L << cell)) == 0) {
+                    int count = 0;
+                    if (!grid.isBoundary(cell + 1)) open[count++] = MazeGrid.EAST;
+                    if (!grid.isBoundary(cell + grid.getStride())) open[count++] = MazeGrid.SOUTH;
+                    if (!grid.isBoundary(cell - 1)) open[count++] = MazeGrid.WEST;
+                    if (!grid.isBoundary(cell - grid.getStride())) open[count++] = MazeGrid.NORTH;
+
+                    int direction = open[rng.nextInt(count)];
+                    walk[cell] = (byte) direction;
+                    cell = grid.neighbor(cell, direction);
+                }
+
+                // carve the loop-erased path and add it to the maze
+                cell = start;
+                while ((inMaze[cell >>> 6] & (1L << cell)) == 0) {
+                    inMaze[cell >>> 6] |= 1L << cell;
+                    grid.carve(cell, walk[cell]);
+                    cell = grid.neighbor(cell, walk[cell]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The name of the algorithm.
+     */
+    public String getName() {return "wilson";}
+}
\ No newline at end of file
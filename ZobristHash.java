@@ -0,0 +1,88 @@
+/**
+ * Zobrist hashing of the state of a maze: its walls and everything in its rooms.
+ * Every (room, feature) pair, a feature being one side of the room being open or one entity
+ * of an OccupancyIndex, like a player, evil circle, power-up or dot, being inside, has its own random 64-bit key, and the hash of
+ * a state is the exclusive or of the keys of all the features present. Adding or removing
+ * one feature is then a single exclusive or with its key, whatever the size of the maze.
+ *
+ * The keys are not kept in a table: each one is computed when needed by mixing the room
+ * and the feature with the SplitMix64 finalizer, so they cost no memory, are the same
+ * in every run, and work for the world coordinates of a ChunkedMaze too.
+ *
+ * Maze keeps the hash of its state up to date (see Maze.getHash), and the room views
+ * report every change of what is inside them. hashWalls hashes the walls of any grid,
+ * for example to find the same maze twice in a library of stored mazes.
+ *
+ * @author https://github.com/f-z
+ * @version 2016.11.16
+ */
+public class ZobristHash
+{
+    // features of a room: the four sides are 0 to 3 (see feature), the entities are above 2^32 (see entity)
+    private static final int SIZE = 4; // the dimensions of the maze, hashed with the walls
+    private static final long SEED = 0x5DEECE66DL; // makes these keys differ from other SplitMix64 users
+
+    /**
+     * @param x The row of the room.
+     * @param y The column of the room.
+     * @param feature The feature of one side of the room, or of one entity.
+     * @return The key of the feature in that room.
+     */
+    public static long key(int x, int y, long feature)
+    {
+        long room = ((long) x << 32) | (y & 0xFFFFFFFFL);
+        return mix(SEED ^ mix(room * 0x9E3779B97F4A7C15L + feature));
+    }
+
+    /**
+     * @param direction One of MazeGrid.NORTH, SOUTH, EAST or WEST.
+     * @return The feature of the side of a room in that direction being open, 0 to 3.
+     */
+    public static int feature(int direction)
+    {
+        return Integer.numberOfTrailingZeros(direction);
+    }
+
+    /**
+     * @param kind The kind of an entity (see OccupancyIndex), 0 or more.
+     * @param tag The tag telling the entity from the others of its kind, like the number of a player.
+     * @return The feature of the entity being in a room, different for every kind and tag.
+     */
+    public static long entity(int kind, int tag)
+    {
+        return ((long) (kind + 1) << 32) | (tag & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Hashes the walls of a whole grid, including the exits of the boundary ring, like the exit room.
+     * It gives the same hash as Maze.getHash for a maze with nothing in its rooms.
+     * @param grid The grid holding the walls of the maze.
+     * @return The hash of the walls.
+     */
+    public static long hashWalls(MazeGrid grid)
+    {
+        long hash = key(grid.getRows(), grid.getCols(), SIZE);
+        for (int x = 0; x <= grid.getRows() + 1; x++) {
+            for (int y = 0; y <= grid.getCols() + 1; y++) {
+                int exits = grid.getExits(grid.index(x, y));
+                for (int direction = MazeGrid.NORTH; direction <= MazeGrid.WEST; direction <<= 1)
+                    if ((exits & direction) != 0)
+                        hash ^= key(x, y, feature(direction));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * The SplitMix64 finalizer, also used by ChunkedMaze and EnemySystem to get well spread numbers
+     * from a seed and a few coordinates without keeping anything in memory.
+     * @param z The number to mix.
+     * @return The mixed number.
+     */
+    static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
\ No newline at end of file